@@ -0,0 +1,56 @@
+package com.jlox;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//what runFile pays to get from source to tree, cold (scan and parse) against warm (hash the source
+//and load the cached tree). the script is mapped from a real file like runFile does
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class CacheBenchmark {
+
+    @Param({"65536", "1048576"})
+    public int size;
+
+    private CharSequence script;
+    private ParseCache cache;
+
+    @Setup
+    public void setup() throws IOException {
+        Path directory = Files.createTempDirectory("jlox-cache-bench");
+        Path file = directory.resolve("script.lox");
+        Files.writeString(file, LoxCorpus.expression(size, 42));
+        script = Lox.readSource(file);
+
+        cache = new ParseCache(directory.resolve("cache"), ParseCache.DEFAULT_MAX_BYTES);
+        cache.parse(script, new Diagnostics());
+    }
+
+    @Benchmark
+    public Expr cold() {
+        return Lox.parse(script, new Diagnostics());
+    }
+
+    @Benchmark
+    public Expr warm() {
+        return cache.parse(script, new Diagnostics());
+    }
+}
@@ -0,0 +1,233 @@
+package com.jlox;
+
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//visitor dispatch against switching on the node kind, the same walk over the same big tree every way:
+//count the nodes and add up the number literals. nodes counter comes out as nodes/s
+//  exprVisitor    Expr.accept, the abstract class visitor everything uses today
+//  sealedVisitor  SealedExpr.accept, same double dispatch through the interface
+//  sealedSwitch   switch on SealedExpr.kind()
+//  sealedMatch    SealedExpr.match, an instanceof chain and then a lambda call per kind
+//  sealedTypes    instanceof chain, about what a pattern matching switch would do
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DispatchBenchmark {
+
+    @Param({"1048576"})
+    public int size;
+
+    private Expr expression;
+    private SealedExpr sealed;
+    private int nodes;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        expression = new Parser(new Scanner(LoxCorpus.arithmetic(size, 42))).parse();
+        sealed = SealedExpr.from(expression);
+        nodes = LoxCorpus.countNodes(expression);
+    }
+
+    @Benchmark
+    public double exprVisitor(Nodes counter) {
+        counter.nodes += nodes;
+        Walk walk = new Walk();
+        expression.accept(walk);
+        return walk.sum + walk.count;
+    }
+
+    @Benchmark
+    public double sealedVisitor(Nodes counter) {
+        counter.nodes += nodes;
+        SealedWalk walk = new SealedWalk();
+        sealed.accept(walk);
+        return walk.sum + walk.count;
+    }
+
+    @Benchmark
+    public double sealedSwitch(Nodes counter) {
+        counter.nodes += nodes;
+        Sum sum = new Sum();
+        sum.bySwitch(sealed);
+        return sum.sum + sum.count;
+    }
+
+    @Benchmark
+    public double sealedMatch(Nodes counter) {
+        counter.nodes += nodes;
+        Sum sum = new Sum();
+        sum.byMatch(sealed);
+        return sum.sum + sum.count;
+    }
+
+    @Benchmark
+    public double sealedTypes(Nodes counter) {
+        counter.nodes += nodes;
+        Sum sum = new Sum();
+        sum.byType(sealed);
+        return sum.sum + sum.count;
+    }
+
+    static class Walk implements Expr.Visitor<Void> {
+        double sum;
+        long count;
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            count++;
+            expr.left.accept(this);
+            expr.right.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            count++;
+            expr.expression.accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            count++;
+            if (expr.value instanceof Double) sum += (Double) expr.value;
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            count++;
+            expr.right.accept(this);
+            return null;
+        }
+    }
+
+    static class SealedWalk implements SealedExpr.Visitor<Void> {
+        double sum;
+        long count;
+
+        @Override
+        public Void visitBinaryExpr(SealedExpr.Binary expr) {
+            count++;
+            expr.left().accept(this);
+            expr.right().accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(SealedExpr.Grouping expr) {
+            count++;
+            expr.expression().accept(this);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(SealedExpr.Literal expr) {
+            count++;
+            if (expr.value() instanceof Double) sum += (Double) expr.value();
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(SealedExpr.Unary expr) {
+            count++;
+            expr.right().accept(this);
+            return null;
+        }
+    }
+
+    static class Sum {
+        double sum;
+        long count;
+
+        void bySwitch(SealedExpr expr) {
+            count++;
+            switch (expr.kind()) {
+                case SealedExpr.BINARY: {
+                    SealedExpr.Binary binary = (SealedExpr.Binary) expr;
+                    bySwitch(binary.left());
+                    bySwitch(binary.right());
+                    break;
+                }
+                case SealedExpr.GROUPING:
+                    bySwitch(((SealedExpr.Grouping) expr).expression());
+                    break;
+                case SealedExpr.LITERAL: {
+                    Object value = ((SealedExpr.Literal) expr).value();
+                    if (value instanceof Double) sum += (Double) value;
+                    break;
+                }
+                case SealedExpr.UNARY:
+                    bySwitch(((SealedExpr.Unary) expr).right());
+                    break;
+                default:
+                    throw new IllegalStateException();
+            }
+        }
+
+        //the lambdas are made once, a fresh set per node would be measuring allocation
+        private final Function<SealedExpr.Binary, Void> binary = node -> {
+            byMatch(node.left());
+            byMatch(node.right());
+            return null;
+        };
+        private final Function<SealedExpr.Grouping, Void> grouping = node -> {
+            byMatch(node.expression());
+            return null;
+        };
+        private final Function<SealedExpr.Literal, Void> literal = node -> {
+            if (node.value() instanceof Double) sum += (Double) node.value();
+            return null;
+        };
+        private final Function<SealedExpr.Unary, Void> unary = node -> {
+            byMatch(node.right());
+            return null;
+        };
+
+        void byMatch(SealedExpr expr) {
+            count++;
+            SealedExpr.match(expr, binary, grouping, literal, unary);
+        }
+
+        void byType(SealedExpr expr) {
+            count++;
+            if (expr instanceof SealedExpr.Binary) {
+                SealedExpr.Binary binary = (SealedExpr.Binary) expr;
+                byType(binary.left());
+                byType(binary.right());
+            } else if (expr instanceof SealedExpr.Literal) {
+                Object value = ((SealedExpr.Literal) expr).value();
+                if (value instanceof Double) sum += (Double) value;
+            } else if (expr instanceof SealedExpr.Grouping) {
+                byType(((SealedExpr.Grouping) expr).expression());
+            } else if (expr instanceof SealedExpr.Unary) {
+                byType(((SealedExpr.Unary) expr).right());
+            } else {
+                throw new IllegalStateException();
+            }
+        }
+    }
+}
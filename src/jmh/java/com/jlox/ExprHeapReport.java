@@ -0,0 +1,61 @@
+package com.jlox;
+
+//node count and retained heap for a plain parse against a hash consed one and an ExprArena,
+//on LoxCorpus.repetitive.
+//not a jmh benchmark, run it straight off the bench classpath:
+//  java -cp target/classes:<bench classpath> com.jlox.ExprHeapReport [bytes] [distinct subexpressions]
+public class ExprHeapReport {
+
+    public static void main(String[] args) {
+        int bytes = args.length > 0 ? Integer.parseInt(args[0]) : 4 << 20;
+        int distinct = args.length > 1 ? Integer.parseInt(args[1]) : 64;
+
+        String script = LoxCorpus.repetitive(bytes, distinct, 42);
+
+        System.out.printf("%,d bytes of source, %d distinct subexpressions%n", script.length(), distinct);
+        System.out.printf("%-8s %14s %14s %14s%n", "", "tree nodes", "node objects", "retained");
+
+        //parsed straight off a scanner, so whatever is retained is what the tree itself keeps alive
+        //(operator tokens included), not a token list on the side
+        report("plain", script, ExprFactory.plain());
+        report("shared", script, ExprFactory.hashConsing());
+        reportArena(script);
+    }
+
+    private static void reportArena(String script) {
+        long before = usedAfterGc();
+        ExprArena arena = ExprArena.from(new Parser(new Scanner(script)).parse());
+        long after = usedAfterGc();
+
+        System.out.printf("%-8s %,14d %,14d %,12d KB%n", "arena", arena.size(), 0, (after - before) / 1024);
+    }
+
+    private static void report(String name, String script, ExprFactory factory) {
+        long before = usedAfterGc();
+        Expr expr = new Parser(new Scanner(script)).using(factory).parse();
+        //the factory keeps its table alive as long as it lives, drop it so only the tree counts
+        factory = null;
+        long after = usedAfterGc();
+
+        System.out.printf("%-8s %,14d %,14d %,12d KB%n", name,
+            LoxCorpus.countNodes(expr), LoxCorpus.countDistinct(expr), (after - before) / 1024);
+    }
+
+    private static long usedAfterGc() {
+        Runtime runtime = Runtime.getRuntime();
+        long used = Long.MAX_VALUE;
+
+        //a few rounds until it settles
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+        }
+
+        return used;
+    }
+}
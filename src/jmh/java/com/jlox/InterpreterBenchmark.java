@@ -0,0 +1,124 @@
+package com.jlox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static com.jlox.TokenType.*;
+
+//evaluation throughput on one big numbers only expression, Interpreter against a plain boxed visitor
+//so the gc profiler shows what the unboxed path saves, and the bytecode VM and self specializing
+//ExecNode tree against both
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class InterpreterBenchmark {
+
+    @Param({"65536", "1048576"})
+    public int size;
+
+    private Expr expression;
+    private Chunk chunk;
+    private VM vm;
+    private ExecNode.Root root;
+    private int nodes;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        expression = new Parser(new Scanner(LoxCorpus.arithmetic(size, 42)).scanTokens()).parse();
+        nodes = LoxCorpus.countNodes(expression);
+        chunk = new Compiler().compile(expression);
+        vm = new VM();
+
+        //first run does the specializing, measure the tree after that
+        root = ExecNode.create(expression);
+        root.execute();
+    }
+
+    @Benchmark
+    public Object interpreter(Nodes counter) {
+        counter.nodes += nodes;
+        return new Interpreter().evaluate(expression);
+    }
+
+    @Benchmark
+    public Object boxed(Nodes counter) {
+        counter.nodes += nodes;
+        return expression.accept(new Boxed());
+    }
+
+    //compiled once up front, this is the re-run-the-same-expression case
+    @Benchmark
+    public Object bytecode(Nodes counter) {
+        counter.nodes += nodes;
+        return vm.run(chunk);
+    }
+
+    @Benchmark
+    public Object compileAndRun(Nodes counter) {
+        counter.nodes += nodes;
+        return vm.run(new Compiler().compile(expression));
+    }
+
+    @Benchmark
+    public Object specialized(Nodes counter) {
+        counter.nodes += nodes;
+        return root.execute();
+    }
+
+    //the textbook evaluator, every intermediate number comes back as a Double
+    static class Boxed implements Expr.Visitor<Object> {
+        @Override
+        public Object visitBinaryExpr(Expr.Binary expr) {
+            Object left = expr.left.accept(this);
+            Object right = expr.right.accept(this);
+
+            switch (expr.operator.type) {
+                case MINUS: return (double) left - (double) right;
+                case STAR: return (double) left * (double) right;
+                case SLASH: return (double) left / (double) right;
+                case PLUS:
+                    if (left instanceof Double && right instanceof Double) return (double) left + (double) right;
+                    return (String) left + (String) right;
+                default: return null;
+            }
+        }
+
+        @Override
+        public Object visitGroupingExpr(Expr.Grouping expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public Object visitLiteralExpr(Expr.Literal expr) {
+            return expr.value;
+        }
+
+        @Override
+        public Object visitUnaryExpr(Expr.Unary expr) {
+            Object right = expr.right.accept(this);
+            if (expr.operator.type == MINUS) return -(double) right;
+            return !Interpreter.isTruthy(right);
+        }
+    }
+}
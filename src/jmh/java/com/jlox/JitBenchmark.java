@@ -0,0 +1,63 @@
+package com.jlox;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//one small expression evaluated over and over, every tier side by side. the jit tier is measured
+//after its already compiled, through Jit.evaluate so the lookup cost is included
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class JitBenchmark {
+
+    //bytes of source, has to stay under what JitCompiler will take
+    @Param({"256", "2048"})
+    public int size;
+
+    private Expr expression;
+    private Interpreter interpreter;
+    private Chunk chunk;
+    private VM vm;
+    private Jit jit;
+
+    @Setup
+    public void setup() {
+        expression = new Parser(new Scanner(LoxCorpus.arithmetic(size, 7)).scanTokens()).parse();
+        interpreter = new Interpreter();
+        chunk = new Compiler().compile(expression);
+        vm = new VM();
+
+        jit = new Jit(new Interpreter(), 1);
+        jit.evaluate(expression);
+        if (!jit.isCompiled(expression)) throw new IllegalStateException("expression too big for the jit");
+    }
+
+    @Benchmark
+    public Object interpreter() {
+        return interpreter.evaluate(expression);
+    }
+
+    @Benchmark
+    public Object bytecode() {
+        return vm.run(chunk);
+    }
+
+    @Benchmark
+    public Object jit() {
+        return jit.evaluate(expression);
+    }
+}
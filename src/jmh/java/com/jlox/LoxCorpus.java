@@ -0,0 +1,279 @@
+package com.jlox;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+//deterministic synthetic lox for the benchmarks, same seed and size always gives the same text
+public final class LoxCorpus {
+
+    private static final String[] KEYWORDS = {
+        "and", "class", "else", "false", "for", "fun", "if", "nil", "or",
+        "print", "return", "super", "this", "true", "var", "while"
+    };
+
+    private static final String[] IDENTIFIERS = {
+        "foo", "fortune", "classy", "thistle", "variable", "whilst", "x", "_tmp1"
+    };
+
+    private static final String[] OPERATORS = { "+", "-", "*", "/", "==", "!=", "<", "<=", ">", ">=" };
+    private static final String[] ARITHMETIC = { "+", "-", "*", "/" };
+
+    //keep nesting shallow enough that the recursive parser and printer dont blow the stack
+    static final int MAX_DEPTH = 40;
+
+    private LoxCorpus() {}
+
+    //which flavour of text to generate
+    public enum Kind {
+        NUMBERS, STRINGS, COMMENTS, NESTED, KEYWORDS, MIXED
+    }
+
+    //token soup for the scanner, doesnt have to parse
+    static String tokens(Kind kind, int bytes, long seed) {
+        Random random = new Random(seed);
+        StringBuilder builder = new StringBuilder(bytes + 64);
+
+        while (builder.length() < bytes) {
+            Kind next = kind == Kind.MIXED ? Kind.values()[random.nextInt(Kind.MIXED.ordinal())] : kind;
+
+            switch (next) {
+                case NUMBERS:
+                    number(builder, random);
+                    builder.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+                    break;
+                case STRINGS:
+                    string(builder, random);
+                    builder.append(" + ");
+                    break;
+                case COMMENTS:
+                    comment(builder, random);
+                    break;
+                case NESTED:
+                    expression(builder, random, 0, MAX_DEPTH);
+                    builder.append('\n');
+                    break;
+                case KEYWORDS:
+                    if (random.nextBoolean()) {
+                        builder.append(KEYWORDS[random.nextInt(KEYWORDS.length)]);
+                    } else {
+                        builder.append(IDENTIFIERS[random.nextInt(IDENTIFIERS.length)]);
+                    }
+                    builder.append(random.nextInt(8) == 0 ? '\n' : ' ');
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        return builder.toString();
+    }
+
+    //one big expression that parses cleanly, random subtrees joined pairwise in parentheses
+    //so the tree stays balanced (a flat a + b + c chain would be as deep as it is long)
+    static String expression(int bytes, long seed) {
+        Random random = new Random(seed);
+        List<String> pieces = new ArrayList<>();
+        int total = 0;
+
+        while (total < bytes) {
+            StringBuilder piece = new StringBuilder();
+            if (random.nextInt(16) == 0) comment(piece, random);
+            expression(piece, random, 0, MAX_DEPTH);
+            pieces.add(piece.toString());
+            total += piece.length() + 6;
+        }
+
+        while (pieces.size() > 1) {
+            List<String> joined = new ArrayList<>();
+            for (int i = 0; i + 1 < pieces.size(); i += 2) {
+                String operator = OPERATORS[random.nextInt(OPERATORS.length)];
+                joined.add("(" + pieces.get(i) + " " + operator + " " + pieces.get(i + 1) + ")");
+            }
+            if (pieces.size() % 2 == 1) joined.add(pieces.get(pieces.size() - 1));
+            pieces = joined;
+        }
+
+        return pieces.get(0);
+    }
+
+    //same balanced shape as expression() but numbers only, so the whole thing evaluates without a runtime error
+    static String arithmetic(int bytes, long seed) {
+        Random random = new Random(seed);
+        List<String> pieces = new ArrayList<>();
+        int total = 0;
+
+        while (total < bytes) {
+            StringBuilder piece = new StringBuilder();
+            arithmetic(piece, random, 0, MAX_DEPTH);
+            pieces.add(piece.toString());
+            total += piece.length() + 6;
+        }
+
+        while (pieces.size() > 1) {
+            List<String> joined = new ArrayList<>();
+            for (int i = 0; i + 1 < pieces.size(); i += 2) {
+                String operator = ARITHMETIC[random.nextInt(ARITHMETIC.length)];
+                joined.add("(" + pieces.get(i) + " " + operator + " " + pieces.get(i + 1) + ")");
+            }
+            if (pieces.size() % 2 == 1) joined.add(pieces.get(pieces.size() - 1));
+            pieces = joined;
+        }
+
+        return pieces.get(0);
+    }
+
+    //generated-code style input, the same few dozen subexpressions over and over, joined into one
+    //balanced expression like expression(). good for anything that shares or caches subtrees
+    static String repetitive(int bytes, int distinct, long seed) {
+        Random random = new Random(seed);
+        String[] pool = new String[distinct];
+        for (int i = 0; i < distinct; i++) {
+            StringBuilder piece = new StringBuilder();
+            arithmetic(piece, random, 0, 6);
+            pool[i] = piece.toString();
+        }
+
+        List<String> pieces = new ArrayList<>();
+        int total = 0;
+        while (total < bytes) {
+            String piece = pool[random.nextInt(distinct)];
+            pieces.add(piece);
+            total += piece.length() + 6;
+        }
+
+        while (pieces.size() > 1) {
+            List<String> joined = new ArrayList<>();
+            for (int i = 0; i + 1 < pieces.size(); i += 2) {
+                String operator = ARITHMETIC[random.nextInt(ARITHMETIC.length)];
+                joined.add("(" + pieces.get(i) + " " + operator + " " + pieces.get(i + 1) + ")");
+            }
+            if (pieces.size() % 2 == 1) joined.add(pieces.get(pieces.size() - 1));
+            pieces = joined;
+        }
+
+        return pieces.get(0);
+    }
+
+    private static void arithmetic(StringBuilder builder, Random random, int depth, int maxDepth) {
+        int choice = depth >= maxDepth ? 0 : random.nextInt(4);
+
+        switch (choice) {
+            case 0: number(builder, random); break;
+            case 1:
+                builder.append('-');
+                arithmetic(builder, random, depth + 1, maxDepth);
+                break;
+            case 2:
+                builder.append('(');
+                arithmetic(builder, random, depth + 1, maxDepth);
+                builder.append(')');
+                break;
+            default:
+                arithmetic(builder, random, depth + 1, maxDepth);
+                builder.append(' ').append(ARITHMETIC[random.nextInt(ARITHMETIC.length)]).append(' ');
+                arithmetic(builder, random, depth + 1, maxDepth);
+                break;
+        }
+    }
+
+    private static void expression(StringBuilder builder, Random random, int depth, int maxDepth) {
+        int choice = depth >= maxDepth ? random.nextInt(3) : random.nextInt(7);
+
+        switch (choice) {
+            case 0: number(builder, random); break;
+            case 1: string(builder, random); break;
+            case 2: builder.append(random.nextBoolean() ? "true" : random.nextBoolean() ? "false" : "nil"); break;
+            case 3:
+                builder.append(random.nextBoolean() ? '-' : '!');
+                expression(builder, random, depth + 1, maxDepth);
+                break;
+            case 4:
+                builder.append('(');
+                expression(builder, random, depth + 1, maxDepth);
+                builder.append(')');
+                break;
+            default:
+                expression(builder, random, depth + 1, maxDepth);
+                builder.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ');
+                expression(builder, random, depth + 1, maxDepth);
+                break;
+        }
+    }
+
+    private static void number(StringBuilder builder, Random random) {
+        builder.append(random.nextInt(100000));
+        if (random.nextBoolean()) builder.append('.').append(random.nextInt(1000));
+    }
+
+    private static void string(StringBuilder builder, Random random) {
+        builder.append('"');
+        int length = 4 + random.nextInt(40);
+        for (int i = 0; i < length; i++) {
+            builder.append((char) ('a' + random.nextInt(26)));
+            if (random.nextInt(12) == 0) builder.append(' ');
+        }
+        builder.append('"');
+    }
+
+    private static void comment(StringBuilder builder, Random random) {
+        if (random.nextBoolean()) {
+            builder.append("// line comment ").append(random.nextInt()).append('\n');
+        } else {
+            builder.append("/* block\n   comment ").append(random.nextInt()).append(" */\n");
+        }
+    }
+
+    //distinct node objects, less than countNodes once subtrees are shared
+    static int countDistinct(Expr expr) {
+        Set<Expr> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        Deque<Expr> work = new ArrayDeque<>();
+        work.push(expr);
+
+        while (!work.isEmpty()) {
+            Expr next = work.pop();
+            if (!seen.add(next)) continue;
+
+            if (next instanceof Expr.Binary) {
+                work.push(((Expr.Binary) next).left);
+                work.push(((Expr.Binary) next).right);
+            } else if (next instanceof Expr.Grouping) {
+                work.push(((Expr.Grouping) next).expression);
+            } else if (next instanceof Expr.Unary) {
+                work.push(((Expr.Unary) next).right);
+            }
+        }
+
+        return seen.size();
+    }
+
+    //number of Expr nodes in a tree, for nodes/s figures
+    static int countNodes(Expr expr) {
+        return expr.accept(new Expr.Visitor<Integer>() {
+            @Override
+            public Integer visitBinaryExpr(Expr.Binary expr) {
+                return 1 + expr.left.accept(this) + expr.right.accept(this);
+            }
+
+            @Override
+            public Integer visitGroupingExpr(Expr.Grouping expr) {
+                return 1 + expr.expression.accept(this);
+            }
+
+            @Override
+            public Integer visitLiteralExpr(Expr.Literal expr) {
+                return 1;
+            }
+
+            @Override
+            public Integer visitUnaryExpr(Expr.Unary expr) {
+                return 1 + expr.right.accept(this);
+            }
+        });
+    }
+}
@@ -0,0 +1,89 @@
+package com.jlox;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//parser throughput on one big balanced expression, the nodes counter comes out as nodes/s
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+
+    @Param({"1048576"})
+    public int size;
+
+    private String script;
+    private List<Token> tokens;
+    private TokenBuffer buffer;
+    private int nodes;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        script = LoxCorpus.expression(size, 42);
+        tokens = new Scanner(script).scanTokens();
+        buffer = new Scanner(script).scanTokenBuffer();
+        nodes = LoxCorpus.countNodes(new Parser(tokens).parse());
+    }
+
+    //parse only, tokens already scanned
+    @Benchmark
+    public Expr parseList(Nodes counter) {
+        counter.nodes += nodes;
+        return new Parser(tokens).parse();
+    }
+
+    //the old recursive descent parser on the same tokens
+    @Benchmark
+    public Expr parseListRecursive(Nodes counter) {
+        counter.nodes += nodes;
+        return new RecursiveParser(tokens, Lox.console()).parse();
+    }
+
+    @Benchmark
+    public Expr parseBuffer(Nodes counter) {
+        counter.nodes += nodes;
+        return new Parser(buffer).parse();
+    }
+
+    //same as parseList but hash consing every node, the cost of the table lookups
+    @Benchmark
+    public Expr parseShared(Nodes counter) {
+        counter.nodes += nodes;
+        return new Parser(tokens).using(ExprFactory.hashConsing()).parse();
+    }
+
+    //scan and parse in lockstep, so this one includes lexing
+    @Benchmark
+    public Expr scanAndParseStream(Nodes counter) {
+        counter.nodes += nodes;
+        return new Parser(new Scanner(script)).parse();
+    }
+
+    @Benchmark
+    public Expr scanAndParseStreamRecursive(Nodes counter) {
+        counter.nodes += nodes;
+        return new RecursiveParser(new Scanner(script)).parse();
+    }
+}
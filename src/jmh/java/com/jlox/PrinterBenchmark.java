@@ -0,0 +1,66 @@
+package com.jlox;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+//ASTprinter throughput, the nodes counter comes out as nodes/s. run with -prof gc to see what each one allocates
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PrinterBenchmark {
+
+    @Param({"1048576"})
+    public int size;
+
+    private Expr expression;
+    private int nodes;
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+    }
+
+    @Setup
+    public void setup() {
+        expression = new Parser(new Scanner(LoxCorpus.expression(size, 42))).parse();
+        nodes = LoxCorpus.countNodes(expression);
+    }
+
+    @Benchmark
+    public String print(Nodes counter) {
+        counter.nodes += nodes;
+        return new ASTprinter().print(expression);
+    }
+
+    //the old recursive printer, every node builds its own String and the parent copies it
+    @Benchmark
+    public String recursive(Nodes counter) {
+        counter.nodes += nodes;
+        return new RecursivePrinter().print(expression);
+    }
+
+    //straight into a Writer that throws the text away, nothing the size of the output is ever held
+    @Benchmark
+    public void stream(Nodes counter) throws IOException {
+        counter.nodes += nodes;
+        new ASTprinter().print(expression, Writer.nullWriter());
+    }
+}
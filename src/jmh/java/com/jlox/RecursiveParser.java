@@ -0,0 +1,198 @@
+package com.jlox;
+
+import java.util.List;
+
+import static com.jlox.TokenType.*;
+
+//the recursive descent Parser from before the Pratt one, one method per precedence level,
+//kept as the baseline in ParserBenchmark. only the token list and streaming front ends
+class RecursiveParser {
+
+    private static class ParseError extends RuntimeException {}
+
+    private final List<Token> tokens;
+    private final Scanner scanner;
+    private int current = 0;
+
+    private static final int RING_SIZE = 4;
+    private static final int RING_MASK = RING_SIZE - 1;
+    private Token[] ring = null;
+    private int pulled = 0;
+
+    private final Diagnostics diagnostics;
+    private ExprFactory factory = ExprFactory.plain();
+
+    RecursiveParser(List<Token> tokens, Diagnostics diagnostics) {
+        this.tokens = tokens;
+        this.scanner = null;
+        this.diagnostics = diagnostics;
+    }
+
+    RecursiveParser(Scanner scanner) {
+        this.tokens = null;
+        this.scanner = scanner;
+        this.ring = new Token[RING_SIZE];
+        this.diagnostics = scanner.diagnostics();
+    }
+
+    RecursiveParser using(ExprFactory factory) {
+        this.factory = factory;
+        return this;
+    }
+
+    private TokenType typeAt(int index) {
+        if (scanner != null) return pull(index).type;
+        return tokens.get(index).type;
+    }
+
+    private Object literalAt(int index) {
+        if (scanner != null) return pull(index).literal;
+        return tokens.get(index).literal;
+    }
+
+    private Token tokenAt(int index) {
+        if (scanner != null) return pull(index);
+        return tokens.get(index);
+    }
+
+    private Token pull(int index) {
+        while (pulled <= index) {
+            ring[pulled & RING_MASK] = scanner.nextToken();
+            pulled++;
+        }
+
+        return ring[index & RING_MASK];
+    }
+
+    private boolean match(TokenType...args) {
+        for (TokenType arg : args) {
+            if (check(arg)) {
+                advance();
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean check(TokenType type) {
+        if (isAtEnd()) return false;
+        return typeAt(current) == type;
+    }
+
+    private void advance() {
+        if (!isAtEnd()) current++;
+    }
+
+    private Token previous() {
+        return tokenAt(current - 1);
+    }
+
+    private boolean isAtEnd() {
+        return typeAt(current) == EOF;
+    }
+
+    private Token peek() {
+        return tokenAt(current);
+    }
+
+    private void consume(TokenType expectedType, String msg) {
+        if (check(expectedType)) {
+            advance();
+            return;
+        }
+        throw error(peek(), msg);
+    }
+
+    private ParseError error(Token token, String msg) {
+        diagnostics.error(token, msg);
+        return new ParseError();
+    }
+
+    private Expr primary() {
+       if (match(TRUE)) return factory.literal(true);
+       if (match(FALSE)) return factory.literal(false);
+       if (match(NIL)) return factory.literal(null);
+
+       if (match(STRING, NUMBER)) {
+            return factory.literal(literalAt(current - 1));
+       }
+
+       if (match(LEFT_PAREN)) {
+            Expr expr = expression();
+            consume(RIGHT_PAREN, "Right ) expected");
+            return factory.grouping(expr);
+       }
+
+       throw error(peek(), "Expression Expected");
+    }
+
+    private Expr unary() {
+        if (match(BANG, MINUS)) {
+            Token operator = previous();
+            Expr right = unary();
+            return factory.unary(operator, right);
+        }
+
+        return primary();
+    }
+
+    private Expr factor() {
+        Expr expr = unary();
+
+        while (match(SLASH, STAR)) {
+            Token operator = previous();
+            Expr right = unary();
+            expr = factory.binary(expr, operator, right);
+        }
+
+        return expr;
+    }
+
+    private Expr term() {
+        Expr expr = factor();
+
+        while (match(PLUS, MINUS)) {
+            Token operator = previous();
+            Expr right = factor();
+            expr = factory.binary(expr, operator, right);
+        }
+
+        return expr;
+    }
+
+    private Expr comparison() {
+        Expr expr = term();
+
+        while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
+            Token operator = previous();
+            Expr right = term();
+            expr = factory.binary(expr, operator, right);
+        }
+
+        return expr;
+    }
+
+    private Expr equality() {
+       Expr expr = comparison();
+
+       while(match(EQUAL_EQUAL, BANG_EQUAL)) {
+            Token operator = previous();
+            Expr right = comparison();
+            expr = factory.binary(expr, operator, right);
+       }
+
+       return expr;
+    }
+
+    private Expr expression() {
+       return equality();
+    }
+
+    Expr parse() {
+        try {
+            return expression();
+        } catch (ParseError error) {
+            return null;
+        }
+    }
+}
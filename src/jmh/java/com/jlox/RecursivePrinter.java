@@ -0,0 +1,57 @@
+package com.jlox;
+
+//the recursive ASTprinter from before it streamed, kept as the baseline in PrinterBenchmark
+class RecursivePrinter implements Expr.Visitor<String> {
+
+
+    String print(Expr expr) {
+        return expr.accept(this);
+    }
+
+
+    @Override
+    public String visitBinaryExpr(Expr.Binary expr) {
+        return parenthesize(expr.operator.lexum ,expr.left, expr.right);
+    }
+
+
+    @Override
+    public String visitUnaryExpr(Expr.Unary expr) {
+        return parenthesize(expr.operator.lexum, expr.right);
+    }
+
+
+    @Override 
+    public String visitGroupingExpr(Expr.Grouping expr) {
+        return parenthesize("group", expr.expression);
+    }
+
+
+    @Override
+    public String visitLiteralExpr(Expr.Literal expr) {
+        //literals are simple and dont need to be in the parenthensize mehtod
+        
+        if (expr.value == null) return "nil";
+        return expr.value.toString();
+
+    }
+
+
+    private String parenthesize(String name, Expr... exprs) {
+        StringBuilder builder = new StringBuilder();
+
+        //begin by with a open parenth
+        builder.append('(').append(name);
+
+        //for each expr in the exprs, append a space then recursively call this funciton
+        for (Expr expr : exprs) {
+            builder.append(" ");
+            builder.append(expr.accept(this));
+        }
+
+        builder.append(")");
+
+
+        return builder.toString();
+    }
+}
@@ -0,0 +1,92 @@
+package com.jlox;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import static com.jlox.TokenType.*;
+
+//scanner throughput, the bytes counter comes out as bytes/s so divide by 1e6 for MB/s
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ScannerBenchmark {
+
+    @Param({"MIXED", "NUMBERS", "STRINGS", "COMMENTS", "NESTED", "KEYWORDS"})
+    public LoxCorpus.Kind kind;
+
+    @Param({"1048576"})
+    public int size;
+
+    private String script;
+    private MappedSource mapped; //the same script memory mapped from a temp file, how runFile reads it
+
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        script = LoxCorpus.tokens(kind, size, 42);
+
+        Path file = Files.createTempFile("scanner-benchmark", ".lox");
+        file.toFile().deleteOnExit();
+        Files.writeString(file, script, StandardCharsets.UTF_8);
+        mapped = MappedSource.map(file, StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public Object scanTokens(Bytes counter) {
+        counter.bytes += script.length();
+        return new Scanner(script).scanTokens();
+    }
+
+    @Benchmark
+    public Object scanTokenBuffer(Bytes counter) {
+        counter.bytes += script.length();
+        return new Scanner(script).scanTokenBuffer();
+    }
+
+    @Benchmark
+    public Object scanMapped(Bytes counter) {
+        counter.bytes += mapped.length();
+        return new Scanner(mapped).scanTokenBuffer();
+    }
+
+    //chunk size forced down so the 1MB corpus actually gets split
+    @Benchmark
+    public Object scanParallel(Bytes counter) {
+        counter.bytes += script.length();
+        return new ParallelScanner(script).scanTokens(script.length() / (4 * Runtime.getRuntime().availableProcessors()) + 1);
+    }
+
+    @Benchmark
+    public int nextToken(Bytes counter) {
+        counter.bytes += script.length();
+
+        Scanner scanner = new Scanner(script);
+        int count = 0;
+        while (scanner.nextToken().type != EOF) count++;
+        return count;
+    }
+}
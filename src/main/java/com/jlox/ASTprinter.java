@@ -1,60 +1,112 @@
 package com.jlox;
 
-import com.jlox.Expr;
-import com.jlox.Expr.Literal;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
 
-class ASTprinter implements Expr.Visitor<String> {
+//prints a tree in lisp form, (op left right). the visit methods dont recurse, they push what
+//still has to be printed onto a work stack, so a deep tree cant overflow the java stack and the
+//text streams out as its made instead of being built up node by node and copied into each parent
+class ASTprinter implements Expr.Visitor<Void> {
+
+    //text gets handed to the Appendable this many chars at a time
+    private static final int CHUNK = 8192;
+
+    //either a String to write out or an Expr still to visit, top of the stack goes next
+    private final ArrayDeque<Object> work = new ArrayDeque<>();
 
 
     String print(Expr expr) {
-        return expr.accept(this);
+        StringBuilder builder = new StringBuilder();
+        try {
+            print(expr, builder);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error); //a StringBuilder never throws
+        }
+        return builder.toString();
+    }
+
+    //writes the same text print(expr) returns, extra memory is the chunk plus the work stack,
+    //which only grows with the depth of the tree
+    void print(Expr expr, Appendable out) throws IOException {
+        PhaseEvents.Print event = new PhaseEvents.Print();
+        event.begin();
+
+        StringBuilder chunk = new StringBuilder(CHUNK);
+        long written = 0;
+        work.clear();
+        work.push(expr);
+
+        while (!work.isEmpty()) {
+            Object next = work.pop();
+            if (next instanceof String) {
+                chunk.append((String) next);
+                if (chunk.length() >= CHUNK) {
+                    out.append(chunk);
+                    written += chunk.length();
+                    chunk.setLength(0);
+                }
+            } else {
+                ((Expr) next).accept(this);
+            }
+        }
+
+        out.append(chunk);
+        written += chunk.length();
+
+        event.end();
+        if (event.shouldCommit()) {
+            ExprShape shape = ExprShape.of(expr);
+            event.nodes = shape.nodes;
+            event.maxDepth = shape.maxDepth;
+            event.chars = written;
+            event.commit();
+        }
     }
 
 
     @Override
-    public String visitBinaryExpr(Expr.Binary expr) {
-        return parenthesize(expr.operator.lexum ,expr.left, expr.right);
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        parenthesize(expr.operator.lexum ,expr.left, expr.right);
+        return null;
     }
 
 
     @Override
-    public String visitUnaryExpr(Expr.Unary expr) {
-        return parenthesize(expr.operator.lexum, expr.right);
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        parenthesize(expr.operator.lexum, expr.right);
+        return null;
     }
 
 
-    @Override 
-    public String visitGroupingExpr(Expr.Grouping expr) {
-        return parenthesize("group", expr.expression);
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        parenthesize("group", expr.expression);
+        return null;
     }
 
 
     @Override
-    public String visitLiteralExpr(Expr.Literal expr) {
+    public Void visitLiteralExpr(Expr.Literal expr) {
         //literals are simple and dont need to be in the parenthensize mehtod
-        
-        if (expr.value == null) return "nil";
-        return expr.value.toString();
 
+        if (expr.value == null) work.push("nil");
+        else work.push(expr.value.toString());
+        return null;
     }
 
 
-    private String parenthesize(String name, Expr... exprs) {
-        StringBuilder builder = new StringBuilder();
-
-        //begin by with a open parenth
-        builder.append('(').append(name);
+    //schedules "(name expr expr...)", pushed backwards since the last thing pushed comes out first
+    private void parenthesize(String name, Expr... exprs) {
+        work.push(")");
 
-        //for each expr in the exprs, append a space then recursively call this funciton
-        for (Expr expr : exprs) {
-            builder.append(" ");
-            builder.append(expr.accept(this));
+        for (int i = exprs.length - 1; i >= 0; i--) {
+            work.push(exprs[i]);
+            work.push(" ");
         }
 
-        builder.append(")");
-
-
-        return builder.toString();
+        work.push(name);
+        work.push("(");
     }
 
     public static void main(String[] args) {
@@ -65,7 +117,7 @@ class ASTprinter implements Expr.Visitor<String> {
             new Token(TokenType.STAR, "*", null, 1),
             new Expr.Grouping(
                 new Expr.Literal(45.67)));
-    
+
         System.out.println(new ASTprinter().print(expression));
     }
 }
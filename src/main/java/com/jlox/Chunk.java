@@ -0,0 +1,101 @@
+package com.jlox;
+
+import java.util.Arrays;
+
+//a compiled expression, one byte per opcode with its operand bytes straight after it.
+//numbers and everything else get separate constant pools so the vm can keep numbers unboxed
+class Chunk {
+
+    //opcodes, the operand (if any) is a three byte constant index
+    static final byte OP_NUMBER        = 0;  //push numbers[index]
+    static final byte OP_CONSTANT      = 1;  //push constants[index]
+    static final byte OP_NIL           = 2;
+    static final byte OP_TRUE          = 3;
+    static final byte OP_FALSE         = 4;
+    static final byte OP_ADD           = 5;
+    static final byte OP_SUBTRACT      = 6;
+    static final byte OP_MULTIPLY      = 7;
+    static final byte OP_DIVIDE        = 8;
+    static final byte OP_NEGATE        = 9;
+    static final byte OP_NOT           = 10;
+    static final byte OP_EQUAL         = 11;
+    static final byte OP_GREATER       = 12;
+    static final byte OP_GREATER_EQUAL = 13; //not GREATER NOT, thats wrong for NaN
+    static final byte OP_LESS          = 14;
+    static final byte OP_LESS_EQUAL    = 15;
+    static final byte OP_RETURN        = 16;
+
+    static final String[] NAMES = {
+        "OP_NUMBER", "OP_CONSTANT", "OP_NIL", "OP_TRUE", "OP_FALSE",
+        "OP_ADD", "OP_SUBTRACT", "OP_MULTIPLY", "OP_DIVIDE", "OP_NEGATE", "OP_NOT",
+        "OP_EQUAL", "OP_GREATER", "OP_GREATER_EQUAL", "OP_LESS", "OP_LESS_EQUAL", "OP_RETURN"
+    };
+
+    private byte[] code = new byte[64];
+    private Token[] tokens = new Token[64]; //operator behind the instruction at each offset, for runtime errors
+    private int count = 0;
+
+    private double[] numbers = new double[8];
+    private int numberCount = 0;
+    private Object[] constants = new Object[8];
+    private int constantCount = 0;
+
+    int maxStack = 0; //deepest the stack gets, set by the Compiler
+
+
+    void write(byte op, Token token) {
+        if (count == code.length) {
+            code = Arrays.copyOf(code, count * 2);
+            tokens = Arrays.copyOf(tokens, count * 2);
+        }
+
+        code[count] = op;
+        tokens[count] = token;
+        count++;
+    }
+
+    //operands are unsigned 24 bit, big endian
+    static final int MAX_INDEX = 0xffffff;
+
+    void writeIndex(int value) {
+        write((byte) (value >> 16), null);
+        write((byte) (value >> 8), null);
+        write((byte) value, null);
+    }
+
+    int addNumber(double value) {
+        if (numberCount == numbers.length) numbers = Arrays.copyOf(numbers, numberCount * 2);
+        numbers[numberCount] = value;
+        return numberCount++;
+    }
+
+    int addConstant(Object value) {
+        if (constantCount == constants.length) constants = Arrays.copyOf(constants, constantCount * 2);
+        constants[constantCount] = value;
+        return constantCount++;
+    }
+
+    int count() {
+        return count;
+    }
+
+    byte[] code() {
+        return code;
+    }
+
+    double[] numbers() {
+        return numbers;
+    }
+
+    Object[] constants() {
+        return constants;
+    }
+
+    Token token(int offset) {
+        return tokens[offset];
+    }
+
+    int readIndex(int offset) {
+        return ((code[offset] & 0xff) << 16) | ((code[offset + 1] & 0xff) << 8) | (code[offset + 2] & 0xff);
+    }
+}
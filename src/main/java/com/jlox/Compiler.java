@@ -0,0 +1,98 @@
+package com.jlox;
+
+//turns an Expr tree into a Chunk, operands first then the operator, so it runs on a plain stack
+class Compiler implements Expr.Visitor<Void> {
+
+    private Chunk chunk;
+    private int depth = 0;
+
+
+    Chunk compile(Expr expr) {
+        chunk = new Chunk();
+        depth = 0;
+
+        expr.accept(this);
+        chunk.write(Chunk.OP_RETURN, null);
+
+        Chunk compiled = chunk;
+        chunk = null;
+        return compiled;
+    }
+
+    //keeps track of how deep the stack gets, so the vm can size it once up front
+    private void push() {
+        depth++;
+        if (depth > chunk.maxStack) chunk.maxStack = depth;
+    }
+
+    private void pop() {
+        depth--;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        expr.left.accept(this);
+        expr.right.accept(this);
+
+        Token operator = expr.operator;
+        switch (operator.type) {
+            case PLUS: chunk.write(Chunk.OP_ADD, operator); break;
+            case MINUS: chunk.write(Chunk.OP_SUBTRACT, operator); break;
+            case STAR: chunk.write(Chunk.OP_MULTIPLY, operator); break;
+            case SLASH: chunk.write(Chunk.OP_DIVIDE, operator); break;
+            case EQUAL_EQUAL: chunk.write(Chunk.OP_EQUAL, operator); break;
+            case BANG_EQUAL:
+                chunk.write(Chunk.OP_EQUAL, operator);
+                chunk.write(Chunk.OP_NOT, operator);
+                break;
+            case GREATER: chunk.write(Chunk.OP_GREATER, operator); break;
+            case GREATER_EQUAL: chunk.write(Chunk.OP_GREATER_EQUAL, operator); break;
+            case LESS: chunk.write(Chunk.OP_LESS, operator); break;
+            case LESS_EQUAL: chunk.write(Chunk.OP_LESS_EQUAL, operator); break;
+            default:
+                throw new IllegalArgumentException("Can't compile operator " + operator.lexum);
+        }
+
+        pop(); //two operands in, one result out
+        return null;
+    }
+
+    //a grouping is only there for the parser, it compiles to nothing
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        Object value = expr.value;
+
+        if (value == null) {
+            chunk.write(Chunk.OP_NIL, null);
+        } else if (Boolean.TRUE.equals(value)) {
+            chunk.write(Chunk.OP_TRUE, null);
+        } else if (Boolean.FALSE.equals(value)) {
+            chunk.write(Chunk.OP_FALSE, null);
+        } else if (value instanceof Double) {
+            int index = chunk.addNumber((Double) value);
+            if (index > Chunk.MAX_INDEX) throw new IllegalStateException("Too many constants in one chunk.");
+            chunk.write(Chunk.OP_NUMBER, null);
+            chunk.writeIndex(index);
+        } else {
+            int index = chunk.addConstant(value);
+            if (index > Chunk.MAX_INDEX) throw new IllegalStateException("Too many constants in one chunk.");
+            chunk.write(Chunk.OP_CONSTANT, null);
+            chunk.writeIndex(index);
+        }
+
+        push();
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        expr.right.accept(this);
+        chunk.write(expr.operator.type == TokenType.MINUS ? Chunk.OP_NEGATE : Chunk.OP_NOT, expr.operator);
+        return null;
+    }
+}
@@ -0,0 +1,116 @@
+package com.jlox;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.jlox.TokenType.*;
+
+//collects the errors from one scan/parse, every run gets its own so two runs never share error state
+class Diagnostics {
+
+    static class Error {
+        final int line;
+        final String lexeme; //token the error is at, null for errors from the scanner
+        final boolean atEnd;
+        final String message;
+
+        Error(int line, String lexeme, boolean atEnd, String message) {
+            this.line = line;
+            this.lexeme = lexeme;
+            this.atEnd = atEnd;
+            this.message = message;
+        }
+
+        //only built when someone actually wants the text
+        @Override
+        public String toString() {
+            String where = "";
+            if (atEnd) {
+                where = " at End";
+            } else if (lexeme != null) {
+                where = " at " + lexeme;
+            }
+
+            return "[line " + line + "] Error" + where + ": " + message;
+        }
+    }
+
+    private final List<Error> errors = new ArrayList<>();
+
+    //runtime errors are kept apart, the cli exits with a different code for them
+    private final List<RuntimeError> runtimeErrors = new ArrayList<>();
+
+
+    void error(int line, String message) {
+        add(new Error(line, null, false, message));
+    }
+
+    void error(Token token, String message) {
+        error(token, token.line, message);
+    }
+
+    //for tokens whose own line is out of date, see EditSession
+    void error(Token token, int line, String message) {
+        add(new Error(line, token.lexum, token.type == EOF, message));
+    }
+
+    //everything funnels through here, synchronized so one sink can be shared across threads
+    void add(Error error) {
+        synchronized (errors) {
+            errors.add(error);
+        }
+    }
+
+    void addAll(Diagnostics other) {
+        for (Error error : other.errors()) add(error);
+    }
+
+    boolean hadError() {
+        synchronized (errors) {
+            return !errors.isEmpty();
+        }
+    }
+
+    int errorCount() {
+        synchronized (errors) {
+            return errors.size();
+        }
+    }
+
+    void runtimeError(RuntimeError error) {
+        synchronized (runtimeErrors) {
+            runtimeErrors.add(error);
+        }
+    }
+
+    boolean hadRuntimeError() {
+        synchronized (runtimeErrors) {
+            return !runtimeErrors.isEmpty();
+        }
+    }
+
+    List<RuntimeError> runtimeErrors() {
+        synchronized (runtimeErrors) {
+            return new ArrayList<>(runtimeErrors);
+        }
+    }
+
+    static String format(RuntimeError error) {
+        return error.getMessage() + "\n[line " + error.token.line + "]";
+    }
+
+    //a copy, so its safe to walk while other threads keep reporting
+    List<Error> errors() {
+        synchronized (errors) {
+            return new ArrayList<>(errors);
+        }
+    }
+
+    //one error per line, in the order they were reported
+    void printTo(Appendable out) throws IOException {
+        for (Error error : errors()) {
+            out.append(error.toString()).append('\n');
+        }
+    }
+}
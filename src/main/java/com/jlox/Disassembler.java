@@ -0,0 +1,70 @@
+package com.jlox;
+
+//prints a Chunk one instruction per line, the bytecode version of ASTprinter
+class Disassembler {
+
+    String disassemble(Chunk chunk, String name) {
+        StringBuilder builder = new StringBuilder();
+        builder.append("== ").append(name).append(" ==\n");
+
+        int offset = 0;
+        while (offset < chunk.count()) {
+            offset = instruction(chunk, offset, builder);
+        }
+
+        return builder.toString();
+    }
+
+    //appends the instruction at offset and returns where the next one starts
+    int instruction(Chunk chunk, int offset, StringBuilder builder) {
+        builder.append(String.format("%04d ", offset));
+
+        //line of the operator, literals dont keep a token so they just get a |
+        Token token = chunk.token(offset);
+        if (token == null) {
+            builder.append("   | ");
+        } else {
+            builder.append(String.format("%4d ", token.line));
+        }
+
+        byte op = chunk.code()[offset];
+        if (op < 0 || op >= Chunk.NAMES.length) {
+            builder.append("Unknown opcode ").append(op).append('\n');
+            return offset + 1;
+        }
+
+        builder.append(Chunk.NAMES[op]);
+
+        switch (op) {
+            case Chunk.OP_NUMBER: {
+                int index = chunk.readIndex(offset + 1);
+                builder.append(String.format("%" + (17 - Chunk.NAMES[op].length()) + "d '", index))
+                    .append(Interpreter.stringify(chunk.numbers()[index])).append("'\n");
+                return offset + 4;
+            }
+            case Chunk.OP_CONSTANT: {
+                int index = chunk.readIndex(offset + 1);
+                builder.append(String.format("%" + (17 - Chunk.NAMES[op].length()) + "d '", index))
+                    .append(Interpreter.stringify(chunk.constants()[index])).append("'\n");
+                return offset + 4;
+            }
+            default:
+                builder.append('\n');
+                return offset + 1;
+        }
+    }
+
+    public static void main(String[] args) {
+        Expr expression = new Expr.Binary(
+            new Expr.Unary(
+                new Token(TokenType.MINUS, "-", null, 1),
+                new Expr.Literal(123.0)),
+            new Token(TokenType.STAR, "*", null, 1),
+            new Expr.Grouping(
+                new Expr.Literal(45.67)));
+
+        Chunk chunk = new Compiler().compile(expression);
+        System.out.print(new Disassembler().disassemble(chunk, "expression"));
+        System.out.println(new VM().interpret(chunk));
+    }
+}
@@ -0,0 +1,262 @@
+package com.jlox;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+//keeps the tokens and tree for a buffer thats being edited, so each edit only re-lexes the tokens
+//around it and only re-parses the groupings it actually touched. the top level of the tree is still
+//parsed again every time, and the token list and arrays below get their tails shifted, so an edit
+//costs a pass over the tokens, just a much cheaper one than lexing and parsing the whole buffer
+class EditSession {
+
+    private final StringBuilder source;
+    private final List<Token> tokens;
+
+    //start offset and start line of every token, the last slot is EOF. lines is the only place the
+    //line is kept up to date, tokens after an edit that added or removed newlines keep the line they
+    //were lexed on, so they (and the groupings built from them) can be reused as they are
+    private int[] starts;
+    private int[] lines;
+
+    private Map<Token, Parser.Span> groupings = new IdentityHashMap<>();
+    private Expr expression;
+
+    //shared by every re-lex, so a name keeps its symbol id across edits
+    private final SymbolTable symbols = new SymbolTable();
+
+    //lexical errors in source order, each filed under the start of the token the scanner was after
+    //when it hit it (the source length past the last token). an edit only swaps out the ones in the
+    //stretch it re-lexed, the rest just move along with their text
+    private List<LexError> lexErrors = new ArrayList<>();
+
+    //lexical errors plus the syntax errors of the last parse, a new one after every edit
+    private Diagnostics diagnostics;
+
+    private static class LexError {
+        final int offset;
+        final Diagnostics.Error error;
+
+        LexError(int offset, Diagnostics.Error error) {
+            this.offset = offset;
+            this.error = error;
+        }
+    }
+
+
+    EditSession(String text) {
+        source = new StringBuilder(text);
+        starts = new int[16];
+        lines = new int[16];
+
+        Diagnostics scanned = new Diagnostics();
+        Scanner scanner = new Scanner(source, 0, 1, scanned, symbols);
+        int count = 0;
+        int reported = 0;
+        while (scanner.scanNextToken()) {
+            reported = collect(scanned, reported, scanner.tokenStart(), lexErrors);
+            if (count + 1 >= starts.length) grow(count * 2);
+            starts[count] = scanner.tokenStart();
+            lines[count] = scanner.tokenLine();
+            count++;
+        }
+        collect(scanned, reported, source.length(), lexErrors);
+        scanner.addEofToken();
+        starts[count] = source.length();
+        lines[count] = scanner.getTokens().get(count).line;
+
+        tokens = scanner.getTokens();
+        reparse(0, tokens.size());
+    }
+
+    private void grow(int capacity) {
+        starts = Arrays.copyOf(starts, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+    }
+
+    //replaces removed chars at offset with inserted and brings the tokens and tree up to date
+    Expr edit(int offset, int removed, String inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > source.length()) {
+            throw new IndexOutOfBoundsException("Edit outside of the source");
+        }
+
+        int eof = tokens.size() - 1;
+        int delta = inserted.length() - removed;
+
+        //back up two tokens from the edit, a number like 1.5 peeks two chars past the token before it
+        int first = Math.max(0, firstTokenAt(offset) - 2);
+        int from = first == 0 ? 0 : starts[first];
+        int line = first == 0 ? 1 : lines[first];
+
+        source.replace(offset, offset + removed, inserted);
+
+        //old tokens starting after the removed text are where the new tokens can line back up
+        int old = firstTokenAt(offset + removed);
+
+        Diagnostics scanned = new Diagnostics();
+        Scanner scanner = new Scanner(source, from, line, scanned, symbols);
+        List<Token> window = scanner.getTokens();
+        List<LexError> windowErrors = new ArrayList<>();
+        int reported = 0;
+        int[] windowStarts = new int[8];
+        int[] windowLines = new int[8];
+        int count = 0;
+        int lineDelta = 0;
+        boolean synced = false;
+
+        while (scanner.scanNextToken()) {
+            int start = scanner.tokenStart();
+            reported = collect(scanned, reported, start, windowErrors);
+            while (old < eof && starts[old] + delta < start) old++;
+
+            if (old < eof && starts[old] + delta == start) {
+                //same clean lexer state on the same text, so every token from here on is unchanged
+                window.remove(window.size() - 1);
+                lineDelta = scanner.tokenLine() - lines[old];
+                synced = true;
+                break;
+            }
+
+            if (count == windowStarts.length) {
+                windowStarts = Arrays.copyOf(windowStarts, count * 2);
+                windowLines = Arrays.copyOf(windowLines, count * 2);
+            }
+            windowStarts[count] = start;
+            windowLines[count] = scanner.tokenLine();
+            count++;
+        }
+
+        if (!synced) {
+            //ran off the end, so the window swallows the old EOF too
+            collect(scanned, reported, source.length(), windowErrors);
+            scanner.addEofToken();
+            windowStarts = Arrays.copyOf(windowStarts, count + 1);
+            windowLines = Arrays.copyOf(windowLines, count + 1);
+            windowStarts[count] = source.length();
+            windowLines[count] = window.get(count).line;
+            count++;
+            old = eof + 1;
+        }
+
+        //errors in the re-lexed stretch are replaced, which takes in the ones filed under the token it
+        //synced on since the gap before that got scanned again too. the gap before token first wasnt
+        int relexedFrom = first == 0 ? -1 : from;
+        int relexedTo = synced ? starts[old] : Integer.MAX_VALUE;
+        List<LexError> errors = new ArrayList<>();
+        for (LexError error : lexErrors) {
+            if (error.offset <= relexedFrom) errors.add(error);
+        }
+        errors.addAll(windowErrors);
+        for (LexError error : lexErrors) {
+            if (error.offset > relexedTo) {
+                Diagnostics.Error moved = error.error;
+                errors.add(new LexError(error.offset + delta,
+                    new Diagnostics.Error(moved.line + lineDelta, moved.lexeme, moved.atEnd, moved.message)));
+            }
+        }
+        lexErrors = errors;
+
+        splice(first, old, window, windowStarts, windowLines, count, delta, lineDelta);
+        return reparse(first, first + count);
+    }
+
+    //files the errors scanned reported since the last call under offset, returns how many it has now
+    private static int collect(Diagnostics scanned, int reported, int offset, List<LexError> into) {
+        if (scanned.errorCount() == reported) return reported;
+
+        List<Diagnostics.Error> errors = scanned.errors();
+        for (int i = reported; i < errors.size(); i++) into.add(new LexError(offset, errors.get(i)));
+        return errors.size();
+    }
+
+    //swaps tokens [first, end) for the window and shifts everything after it, in place
+    private void splice(int first, int end, List<Token> window, int[] windowStarts, int[] windowLines,
+                        int count, int delta, int lineDelta) {
+        int removed = end - first;
+        int tail = tokens.size() - end;
+
+        //overwrite what lines up and only insert or delete the difference, so the tail moves once
+        int same = Math.min(removed, count);
+        for (int i = 0; i < same; i++) tokens.set(first + i, window.get(i));
+        if (count > removed) {
+            tokens.addAll(first + removed, window.subList(removed, count));
+        } else if (count < removed) {
+            tokens.subList(first + count, end).clear();
+        }
+
+        if (first + count + tail > starts.length) grow(Math.max(first + count + tail, starts.length * 2));
+        System.arraycopy(starts, end, starts, first + count, tail);
+        System.arraycopy(lines, end, lines, first + count, tail);
+        System.arraycopy(windowStarts, 0, starts, first, count);
+        System.arraycopy(windowLines, 0, lines, first, count);
+
+        for (int i = first + count; i < first + count + tail; i++) {
+            starts[i] += delta;
+            lines[i] += lineDelta;
+        }
+    }
+
+    private Expr reparse(int damageFrom, int damageTo) {
+        diagnostics = new Diagnostics();
+        for (LexError error : lexErrors) diagnostics.add(error.error);
+
+        Parser parser = new Parser(tokens, diagnostics, groupings, damageFrom, damageTo, this::line);
+        expression = parser.parse();
+        groupings = parser.groupings();
+        return expression;
+    }
+
+    //every error in the buffer as it stands, lexical ones first in source order then any syntax error
+    Diagnostics diagnostics() {
+        return diagnostics;
+    }
+
+    //index of the first token starting at or after offset, EOF if there isnt one
+    private int firstTokenAt(int offset) {
+        int low = 0;
+        int high = tokens.size() - 1;
+
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (starts[mid] < offset) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+
+        return low;
+    }
+
+    String source() {
+        return source.toString();
+    }
+
+    //Token.line is the line a token was lexed on, an edit above it that adds or removes newlines doesnt
+    //rewrite it (that would mean a new Token for everything after the edit). ask line(index) instead
+    List<Token> tokens() {
+        return Collections.unmodifiableList(tokens);
+    }
+
+    //the line a fresh scan would give the token at index, which is where it ends. its own Token.line
+    //is out of date once an edit before it adds or removes newlines
+    int line(int index) {
+        Token token = tokens.get(index);
+        int line = lines[index];
+
+        //only a string can run over more than one line
+        if (token.type == TokenType.STRING) {
+            for (int i = 0; i < token.lexum.length(); i++) {
+                if (token.lexum.charAt(i) == '\n') line++;
+            }
+        }
+        return line;
+    }
+
+    Expr expression() {
+        return expression;
+    }
+}
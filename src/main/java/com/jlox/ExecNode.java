@@ -0,0 +1,499 @@
+package com.jlox;
+
+//executable version of an Expr tree that specializes itself as it runs. binary and unary nodes start
+//out uninitialized, the first time they run they look at the operand types and replace themselves with
+//a node for exactly that case (double add, string concat, ...). if a specialized node later sees a type
+//it wasnt built for it rewrites itself to the generic node for good, so each node only ever goes
+//uninitialized -> specialized -> generic.
+//
+//double specializations pull their operands through executeDouble, so a tree thats all numbers runs
+//with no boxing and no type checks beyond the node class itself.
+//rewriting isnt thread safe, build one tree per thread
+abstract class ExecNode {
+
+    ExecNode parent = null;
+
+    abstract Object execute();
+
+    //the unboxed path, nodes that produce doubles override this
+    double executeDouble() throws UnexpectedResult {
+        Object value = execute();
+        if (value instanceof Double) return (Double) value;
+        throw new UnexpectedResult(value);
+    }
+
+    //swaps this node for replacement in the tree and hands back replacement
+    final <T extends ExecNode> T replace(T replacement) {
+        replacement.parent = parent;
+        parent.replaceChild(this, replacement);
+        return replacement;
+    }
+
+    void replaceChild(ExecNode child, ExecNode replacement) {
+        throw new IllegalStateException(getClass().getSimpleName() + " has no children");
+    }
+
+    final <T extends ExecNode> T adopt(T child) {
+        child.parent = this;
+        return child;
+    }
+
+
+    //thrown by executeDouble when the value isnt a double, carries the real value so nothing
+    //has to be evaluated twice. only happens on a type miss so it doesnt bother with a stack trace
+    static class UnexpectedResult extends Exception {
+        final Object result;
+
+        UnexpectedResult(Object result) {
+            super(null, null, false, false);
+            this.result = result;
+        }
+    }
+
+
+    //builds the tree, groupings dont need a node of their own
+    static Root create(Expr expr) {
+        return new Root(expr.accept(new Builder()));
+    }
+
+    private static class Builder implements Expr.Visitor<ExecNode> {
+        @Override
+        public ExecNode visitBinaryExpr(Expr.Binary expr) {
+            ExecNode left = expr.left.accept(this);
+            ExecNode right = expr.right.accept(this);
+
+            switch (expr.operator.type) {
+                case EQUAL_EQUAL: return new Equal(expr.operator, left, right, false);
+                case BANG_EQUAL: return new Equal(expr.operator, left, right, true);
+                default: return new UninitializedBinary(expr.operator, left, right);
+            }
+        }
+
+        @Override
+        public ExecNode visitGroupingExpr(Expr.Grouping expr) {
+            return expr.expression.accept(this);
+        }
+
+        @Override
+        public ExecNode visitLiteralExpr(Expr.Literal expr) {
+            if (expr.value instanceof Double) return new NumberLiteral((Double) expr.value);
+            return new Literal(expr.value);
+        }
+
+        @Override
+        public ExecNode visitUnaryExpr(Expr.Unary expr) {
+            ExecNode right = expr.right.accept(this);
+            if (expr.operator.type == TokenType.BANG) return new Not(expr.operator, right);
+            return new UninitializedNegate(expr.operator, right);
+        }
+    }
+
+
+    //top of the tree, so the first real node has a parent to be replaced in
+    static final class Root extends ExecNode {
+        private ExecNode body;
+
+        Root(ExecNode body) {
+            this.body = adopt(body);
+        }
+
+        @Override
+        Object execute() {
+            return body.execute();
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode replacement) {
+            if (body == child) body = replacement;
+        }
+
+        //for looking at what the tree has specialized into
+        ExecNode body() {
+            return body;
+        }
+    }
+
+
+    //leaves
+
+    static final class NumberLiteral extends ExecNode {
+        final double value;
+        final Double boxed; //the literal's own Double, so execute doesnt box a new one each time
+
+        NumberLiteral(Double value) {
+            this.value = value;
+            this.boxed = value;
+        }
+
+        @Override
+        Object execute() {
+            return boxed;
+        }
+
+        @Override
+        double executeDouble() {
+            return value;
+        }
+    }
+
+    static final class Literal extends ExecNode {
+        final Object value;
+
+        Literal(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        Object execute() {
+            return value;
+        }
+    }
+
+
+    //binary operators
+
+    abstract static class Binary extends ExecNode {
+        final Token operator;
+        ExecNode left;
+        ExecNode right;
+
+        Binary(Token operator, ExecNode left, ExecNode right) {
+            this.operator = operator;
+            this.left = adopt(left);
+            this.right = adopt(right);
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode replacement) {
+            if (left == child) left = replacement;
+            if (right == child) right = replacement;
+        }
+
+        //gives up on specializing, the rest of this run finishes on the generic node with the
+        //operands that were already evaluated
+        final Object generalize(Object left, Object right) {
+            return replace(new GenericBinary(operator, this.left, this.right)).apply(left, right);
+        }
+    }
+
+    static final class UninitializedBinary extends Binary {
+        UninitializedBinary(Token operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        Object execute() {
+            Object leftValue = left.execute();
+            Object rightValue = right.execute();
+
+            boolean numbers = leftValue instanceof Double && rightValue instanceof Double;
+            boolean strings = leftValue instanceof String && rightValue instanceof String;
+
+            switch (operator.type) {
+                case PLUS:
+                    if (numbers) return replace(new Add(operator, left, right)).apply(leftValue, rightValue);
+                    if (strings) return replace(new Concat(operator, left, right)).apply(leftValue, rightValue);
+                    break;
+                case MINUS:
+                    if (numbers) return replace(new Subtract(operator, left, right)).apply(leftValue, rightValue);
+                    break;
+                case STAR:
+                    if (numbers) return replace(new Multiply(operator, left, right)).apply(leftValue, rightValue);
+                    break;
+                case SLASH:
+                    if (numbers) return replace(new Divide(operator, left, right)).apply(leftValue, rightValue);
+                    break;
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    if (numbers) return replace(new Compare(operator, left, right)).apply(leftValue, rightValue);
+                    break;
+                default:
+                    break;
+            }
+
+            return generalize(leftValue, rightValue);
+        }
+    }
+
+    //number op number, operands come in unboxed
+    abstract static class Arithmetic extends Binary {
+        Arithmetic(Token operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        abstract double calculate(double left, double right);
+
+        final Object apply(Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return calculate((Double) left, (Double) right);
+            return generalize(left, right);
+        }
+
+        @Override
+        final Object execute() {
+            try {
+                return executeDouble();
+            } catch (UnexpectedResult miss) {
+                return miss.result;
+            }
+        }
+
+        @Override
+        final double executeDouble() throws UnexpectedResult {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble();
+            } catch (UnexpectedResult miss) {
+                throw new UnexpectedResult(generalize(miss.result, right.execute()));
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble();
+            } catch (UnexpectedResult miss) {
+                throw new UnexpectedResult(generalize(leftValue, miss.result));
+            }
+
+            return calculate(leftValue, rightValue);
+        }
+    }
+
+    static final class Add extends Arithmetic {
+        Add(Token operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double calculate(double left, double right) {
+            return left + right;
+        }
+    }
+
+    static final class Subtract extends Arithmetic {
+        Subtract(Token operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double calculate(double left, double right) {
+            return left - right;
+        }
+    }
+
+    static final class Multiply extends Arithmetic {
+        Multiply(Token operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double calculate(double left, double right) {
+            return left * right;
+        }
+    }
+
+    static final class Divide extends Arithmetic {
+        Divide(Token operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        @Override
+        double calculate(double left, double right) {
+            return left / right;
+        }
+    }
+
+    //> >= < <= on numbers
+    static final class Compare extends Binary {
+        Compare(Token operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        Object apply(Object left, Object right) {
+            if (left instanceof Double && right instanceof Double) return compare((Double) left, (Double) right);
+            return generalize(left, right);
+        }
+
+        private boolean compare(double left, double right) {
+            switch (operator.type) {
+                case GREATER: return left > right;
+                case GREATER_EQUAL: return left >= right;
+                case LESS: return left < right;
+                default: return left <= right;
+            }
+        }
+
+        @Override
+        Object execute() {
+            double leftValue;
+            try {
+                leftValue = left.executeDouble();
+            } catch (UnexpectedResult miss) {
+                return generalize(miss.result, right.execute());
+            }
+
+            double rightValue;
+            try {
+                rightValue = right.executeDouble();
+            } catch (UnexpectedResult miss) {
+                return generalize(leftValue, miss.result);
+            }
+
+            return compare(leftValue, rightValue);
+        }
+    }
+
+    static final class Concat extends Binary {
+        Concat(Token operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        Object apply(Object left, Object right) {
+            if (left instanceof String && right instanceof String) return (String) left + (String) right;
+            return generalize(left, right);
+        }
+
+        @Override
+        Object execute() {
+            return apply(left.execute(), right.execute());
+        }
+    }
+
+    //everything the specializations dont cover, same checks and errors as Interpreter
+    static final class GenericBinary extends Binary {
+        GenericBinary(Token operator, ExecNode left, ExecNode right) {
+            super(operator, left, right);
+        }
+
+        Object apply(Object left, Object right) {
+            if (operator.type == TokenType.PLUS) {
+                if (left instanceof Double && right instanceof Double) return (Double) left + (Double) right;
+                if (left instanceof String && right instanceof String) return (String) left + (String) right;
+                throw new RuntimeError(operator, "Operands must be two numbers or two strings.");
+            }
+
+            if (!(left instanceof Double) || !(right instanceof Double)) {
+                throw new RuntimeError(operator, "Operands must be numbers.");
+            }
+
+            double a = (Double) left;
+            double b = (Double) right;
+            switch (operator.type) {
+                case MINUS: return a - b;
+                case STAR: return a * b;
+                case SLASH: return a / b;
+                case GREATER: return a > b;
+                case GREATER_EQUAL: return a >= b;
+                case LESS: return a < b;
+                default: return a <= b;
+            }
+        }
+
+        @Override
+        Object execute() {
+            return apply(left.execute(), right.execute());
+        }
+    }
+
+    //== and != take anything, so theres nothing to specialize on
+    static final class Equal extends Binary {
+        private final boolean negated;
+
+        Equal(Token operator, ExecNode left, ExecNode right, boolean negated) {
+            super(operator, left, right);
+            this.negated = negated;
+        }
+
+        @Override
+        Object execute() {
+            return Interpreter.isEqual(left.execute(), right.execute()) != negated;
+        }
+    }
+
+
+    //unary operators
+
+    abstract static class Unary extends ExecNode {
+        final Token operator;
+        ExecNode right;
+
+        Unary(Token operator, ExecNode right) {
+            this.operator = operator;
+            this.right = adopt(right);
+        }
+
+        @Override
+        void replaceChild(ExecNode child, ExecNode replacement) {
+            if (right == child) right = replacement;
+        }
+    }
+
+    static final class UninitializedNegate extends Unary {
+        UninitializedNegate(Token operator, ExecNode right) {
+            super(operator, right);
+        }
+
+        @Override
+        Object execute() {
+            Object value = right.execute();
+            if (value instanceof Double) return replace(new Negate(operator, right)).apply(value);
+            return replace(new GenericNegate(operator, right)).apply(value);
+        }
+    }
+
+    static final class Negate extends Unary {
+        Negate(Token operator, ExecNode right) {
+            super(operator, right);
+        }
+
+        Object apply(Object value) {
+            if (value instanceof Double) return -(Double) value;
+            return replace(new GenericNegate(operator, right)).apply(value);
+        }
+
+        @Override
+        Object execute() {
+            try {
+                return executeDouble();
+            } catch (UnexpectedResult miss) {
+                return miss.result;
+            }
+        }
+
+        @Override
+        double executeDouble() throws UnexpectedResult {
+            try {
+                return -right.executeDouble();
+            } catch (UnexpectedResult miss) {
+                throw new UnexpectedResult(replace(new GenericNegate(operator, right)).apply(miss.result));
+            }
+        }
+    }
+
+    static final class GenericNegate extends Unary {
+        GenericNegate(Token operator, ExecNode right) {
+            super(operator, right);
+        }
+
+        Object apply(Object value) {
+            if (value instanceof Double) return -(Double) value;
+            throw new RuntimeError(operator, "Operand must be a number.");
+        }
+
+        @Override
+        Object execute() {
+            return apply(right.execute());
+        }
+    }
+
+    static final class Not extends Unary {
+        Not(Token operator, ExecNode right) {
+            super(operator, right);
+        }
+
+        @Override
+        Object execute() {
+            return !Interpreter.isTruthy(right.execute());
+        }
+    }
+}
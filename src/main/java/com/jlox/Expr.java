@@ -1,11 +1,40 @@
 package com.jlox;
 
 import java.util.List;
+import java.util.Objects;
 
 
 //this class represents generic expressions
 abstract class Expr{
 
+  //cached structural hash, 0 until hashCode is first called
+  private int hash = 0;
+
+  //every node is a value, equals compares the whole subtree. the hash is cached here so hashing
+  //a subtree again is free
+  @Override
+  public final int hashCode() {
+    int h = hash;
+    if (h == 0) {
+      h = structuralHash();
+      if (h == 0) h = 1;
+      hash = h;
+    }
+    return h;
+  }
+
+  abstract int structuralHash();
+
+  //inside a tree tokens match when they read the same, where they sit in the source doesnt count.
+  //Token itself keeps identity equality
+  static boolean sameToken(Token a, Token b) {
+    return a.type == b.type && a.lexum.equals(b.lexum);
+  }
+
+  static int tokenHash(Token token) {
+    return 31 * token.type.ordinal() + token.lexum.hashCode();
+  }
+
   //this is the method that gets overridden by each sub class
   abstract <R> R accept(Visitor<R> visitor);
 
@@ -37,6 +66,27 @@ abstract class Expr{
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitBinaryExpr(this);
     }
+
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) return true;
+      if (!(object instanceof Binary)) return false;
+
+      Binary other = (Binary) object;
+      return hashCode() == other.hashCode()
+          && Objects.equals(left, other.left)
+          && sameToken(operator, other.operator)
+          && Objects.equals(right, other.right);
+    }
+
+    @Override
+    int structuralHash() {
+      int h = 1989867553;
+      h = 31 * h + Objects.hashCode(left);
+      h = 31 * h + tokenHash(operator);
+      h = 31 * h + Objects.hashCode(right);
+      return h;
+    }
   }
 
 
@@ -51,6 +101,23 @@ abstract class Expr{
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitGroupingExpr(this);
       }
+
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) return true;
+      if (!(object instanceof Grouping)) return false;
+
+      Grouping other = (Grouping) object;
+      return hashCode() == other.hashCode()
+          && Objects.equals(expression, other.expression);
+    }
+
+    @Override
+    int structuralHash() {
+      int h = 571015459;
+      h = 31 * h + Objects.hashCode(expression);
+      return h;
+    }
     }
   static class Literal extends Expr {
     Literal(Object value) {
@@ -63,6 +130,23 @@ abstract class Expr{
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitLiteralExpr(this);
     }
+
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) return true;
+      if (!(object instanceof Literal)) return false;
+
+      Literal other = (Literal) object;
+      return hashCode() == other.hashCode()
+          && Objects.equals(value, other.value);
+    }
+
+    @Override
+    int structuralHash() {
+      int h = 1847113871;
+      h = 31 * h + Objects.hashCode(value);
+      return h;
+    }
   }
   
   //sub class for unary expr
@@ -83,6 +167,25 @@ abstract class Expr{
     <R> R accept(Visitor<R> visitor) {
       return visitor.visitUnaryExpr(this);
     }
+
+    @Override
+    public boolean equals(Object object) {
+      if (this == object) return true;
+      if (!(object instanceof Unary)) return false;
+
+      Unary other = (Unary) object;
+      return hashCode() == other.hashCode()
+          && sameToken(operator, other.operator)
+          && Objects.equals(right, other.right);
+    }
+
+    @Override
+    int structuralHash() {
+      int h = 81873167;
+      h = 31 * h + tokenHash(operator);
+      h = 31 * h + Objects.hashCode(right);
+      return h;
+    }
   }
 
   
@@ -0,0 +1,221 @@
+package com.jlox;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+//flat encoding of Expr trees, generated by GenerateAST from the same types as Expr.
+//a node is an int index. kinds[] has the node kind in the low byte and the operator's token type
+//ordinal above it, the fields go in the slot columns: child node indexes, the operator's line,
+//or an index into the literal pool. children always come before their parent
+final class ExprArena {
+
+  static final int BINARY = 0;
+  static final int GROUPING = 1;
+  static final int LITERAL = 2;
+  static final int UNARY = 3;
+
+  interface Visitor<R> {
+    R visitBinary(int node);
+    R visitGrouping(int node);
+    R visitLiteral(int node);
+    R visitUnary(int node);
+  }
+
+  private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+  private int[] kinds = new int[16];
+  private int[] slot0 = new int[16];
+  private int[] slot1 = new int[16];
+  private int[] slot2 = new int[16];
+  private int size = 0;
+
+  //equal literals share one slot
+  private Object[] literals = new Object[16];
+  private int literalCount = 0;
+  private Map<Object, Integer> literalIndex = new HashMap<>(); //dropped by trim, rebuilt if needed
+
+  int root = -1;
+
+  int size() {
+    return size;
+  }
+
+  int kind(int node) {
+    return kinds[node] & 0xff;
+  }
+
+  <R> R accept(int node, Visitor<R> visitor) {
+    switch (kind(node)) {
+      case BINARY: return visitor.visitBinary(node);
+      case GROUPING: return visitor.visitGrouping(node);
+      case LITERAL: return visitor.visitLiteral(node);
+      case UNARY: return visitor.visitUnary(node);
+      default: throw new IllegalStateException("Bad node " + node);
+    }
+  }
+
+  //binary
+
+  int binary(int left, Token operator, int right) {
+    int node = node(BINARY | operator.type.ordinal() << 8);
+    slot0[node] = left;
+    slot1[node] = operator.line;
+    slot2[node] = right;
+    return node;
+  }
+
+  int binaryLeft(int node) {
+    return slot0[node];
+  }
+
+  TokenType binaryOperator(int node) {
+    return TOKEN_TYPES[kinds[node] >>> 8];
+  }
+
+  int binaryOperatorLine(int node) {
+    return slot1[node];
+  }
+
+  int binaryRight(int node) {
+    return slot2[node];
+  }
+
+  //grouping
+
+  int grouping(int expression) {
+    int node = node(GROUPING);
+    slot0[node] = expression;
+    return node;
+  }
+
+  int groupingExpression(int node) {
+    return slot0[node];
+  }
+
+  //literal
+
+  int literal(Object value) {
+    int node = node(LITERAL);
+    slot0[node] = pool(value);
+    return node;
+  }
+
+  Object literalValue(int node) {
+    return literals[slot0[node]];
+  }
+
+  //unary
+
+  int unary(Token operator, int right) {
+    int node = node(UNARY | operator.type.ordinal() << 8);
+    slot0[node] = operator.line;
+    slot1[node] = right;
+    return node;
+  }
+
+  TokenType unaryOperator(int node) {
+    return TOKEN_TYPES[kinds[node] >>> 8];
+  }
+
+  int unaryOperatorLine(int node) {
+    return slot0[node];
+  }
+
+  int unaryRight(int node) {
+    return slot1[node];
+  }
+
+  private int node(int kind) {
+    if (size == kinds.length) {
+      int capacity = Math.max(16, size * 2);
+      kinds = Arrays.copyOf(kinds, capacity);
+      slot0 = Arrays.copyOf(slot0, capacity);
+      slot1 = Arrays.copyOf(slot1, capacity);
+      slot2 = Arrays.copyOf(slot2, capacity);
+    }
+
+    kinds[size] = kind;
+    return size++;
+  }
+
+  private int pool(Object value) {
+    if (literalIndex == null) {
+      literalIndex = new HashMap<>();
+      for (int i = 0; i < literalCount; i++) literalIndex.put(literals[i], i);
+    }
+
+    Integer index = literalIndex.get(value);
+    if (index != null) return index;
+
+    if (literalCount == literals.length) literals = Arrays.copyOf(literals, Math.max(16, literalCount * 2));
+    literals[literalCount] = value;
+    literalIndex.put(value, literalCount);
+    return literalCount++;
+  }
+
+  //drops the spare capacity and the literal lookup table, from() calls this once its done
+  void trim() {
+    kinds = Arrays.copyOf(kinds, size);
+    slot0 = Arrays.copyOf(slot0, size);
+    slot1 = Arrays.copyOf(slot1, size);
+    slot2 = Arrays.copyOf(slot2, size);
+    literals = Arrays.copyOf(literals, literalCount);
+    literalIndex = null;
+  }
+
+  //operator tokens come back with their type, lexeme and line, literal tokens never end up in a tree
+  private static Token token(int kind, int line) {
+    TokenType type = TOKEN_TYPES[kind >>> 8];
+    return new Token(type, Scanner.fixedLexeme(type), null, line);
+  }
+
+  static ExprArena from(Expr expr) {
+    ExprArena arena = new ExprArena();
+    arena.root = expr.accept(new Encoder(arena));
+    arena.trim();
+    return arena;
+  }
+
+  Expr toExpr() {
+    return toExpr(root);
+  }
+
+  Expr toExpr(int node) {
+    switch (kind(node)) {
+      case BINARY: return new Expr.Binary(toExpr(slot0[node]), token(kinds[node], slot1[node]), toExpr(slot2[node]));
+      case GROUPING: return new Expr.Grouping(toExpr(slot0[node]));
+      case LITERAL: return new Expr.Literal(literals[slot0[node]]);
+      case UNARY: return new Expr.Unary(token(kinds[node], slot0[node]), toExpr(slot1[node]));
+      default: throw new IllegalStateException("Bad node " + node);
+    }
+  }
+
+  private static class Encoder implements Expr.Visitor<Integer> {
+    private final ExprArena arena;
+
+    Encoder(ExprArena arena) {
+      this.arena = arena;
+    }
+
+    @Override
+    public Integer visitBinaryExpr(Expr.Binary expr) {
+      return arena.binary(expr.left.accept(this), expr.operator, expr.right.accept(this));
+    }
+
+    @Override
+    public Integer visitGroupingExpr(Expr.Grouping expr) {
+      return arena.grouping(expr.expression.accept(this));
+    }
+
+    @Override
+    public Integer visitLiteralExpr(Expr.Literal expr) {
+      return arena.literal(expr.value);
+    }
+
+    @Override
+    public Integer visitUnaryExpr(Expr.Unary expr) {
+      return arena.unary(expr.operator, expr.right.accept(this));
+    }
+  }
+}
@@ -0,0 +1,110 @@
+package com.jlox;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+//makes the nodes for the Parser. the plain factory just news them up, a hash consing one hands back
+//the node it already made for any subtree thats structurally equal, so repeated subexpressions turn
+//into one shared node and the tree becomes a dag.
+//
+//operators compare by type and lexeme, so a shared subtree keeps the operator tokens (and line numbers)
+//of the first place it showed up, a runtime error in it reports that line
+class ExprFactory {
+
+    private static final ExprFactory plain = new ExprFactory(false);
+
+    //structurally equal node -> the one we kept, null for the plain factory
+    private final Map<Key, Expr> nodes;
+    private long requested = 0; //nodes asked for
+    private long shared = 0; //of those, how many came back as an existing node
+
+
+    private ExprFactory(boolean hashCons) {
+        this.nodes = hashCons ? new HashMap<>() : null;
+    }
+
+    static ExprFactory plain() {
+        return plain;
+    }
+
+    //a new hash consing factory, nodes are only shared within one factory
+    static ExprFactory hashConsing() {
+        return new ExprFactory(true);
+    }
+
+    Expr binary(Expr left, Token operator, Expr right) {
+        return intern(new Expr.Binary(left, operator, right));
+    }
+
+    Expr grouping(Expr expression) {
+        return intern(new Expr.Grouping(expression));
+    }
+
+    Expr literal(Object value) {
+        return intern(new Expr.Literal(value));
+    }
+
+    Expr unary(Token operator, Expr right) {
+        return intern(new Expr.Unary(operator, right));
+    }
+
+    private Expr intern(Expr node) {
+        if (nodes == null) return node;
+
+        requested++;
+        Expr existing = nodes.putIfAbsent(new Key(node), node);
+        if (existing == null) return node;
+
+        shared++;
+        return existing;
+    }
+
+    //distinct nodes kept, 0 for the plain factory
+    int size() {
+        return nodes == null ? 0 : nodes.size();
+    }
+
+    long requested() {
+        return requested;
+    }
+
+    long shared() {
+        return shared;
+    }
+
+    //children are already interned by the time their parent gets here, so two nodes are the same
+    //when their children are == and the rest matches, no need to walk the subtrees like Expr.equals.
+    //the hash is still the structural one the node caches
+    private static final class Key {
+        final Expr node;
+
+        Key(Expr node) {
+            this.node = node;
+        }
+
+        @Override
+        public int hashCode() {
+            return node.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) return false;
+            Expr other = ((Key) object).node;
+            if (node.getClass() != other.getClass() || node.hashCode() != other.hashCode()) return false;
+
+            if (node instanceof Expr.Binary) {
+                Expr.Binary a = (Expr.Binary) node, b = (Expr.Binary) other;
+                return a.left == b.left && a.right == b.right && Expr.sameToken(a.operator, b.operator);
+            } else if (node instanceof Expr.Grouping) {
+                return ((Expr.Grouping) node).expression == ((Expr.Grouping) other).expression;
+            } else if (node instanceof Expr.Literal) {
+                return Objects.equals(((Expr.Literal) node).value, ((Expr.Literal) other).value);
+            } else {
+                Expr.Unary a = (Expr.Unary) node, b = (Expr.Unary) other;
+                return a.right == b.right && Expr.sameToken(a.operator, b.operator);
+            }
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.jlox;
+
+import java.util.Arrays;
+
+//how big and how deep a tree is, for the jfr events and --stats. walks with a work stack like
+//ASTprinter so it cant overflow, a shared subtree counts once for every place it appears
+class ExprShape implements Expr.Visitor<Void> {
+
+    long nodes = 0;
+    int maxDepth = 0;
+
+    //nodes still to visit and how deep each one sits
+    private Expr[] stack = new Expr[64];
+    private int[] depths = new int[64];
+    private int size = 0;
+    private int depth = 0; //of the node being visited
+
+    static ExprShape of(Expr expr) {
+        ExprShape shape = new ExprShape();
+        if (expr == null) return shape;
+
+        shape.push(expr, 1);
+        while (shape.size > 0) {
+            Expr next = shape.stack[--shape.size];
+            shape.stack[shape.size] = null;
+            shape.depth = shape.depths[shape.size];
+            shape.nodes++;
+            shape.maxDepth = Math.max(shape.maxDepth, shape.depth);
+            next.accept(shape);
+        }
+
+        return shape;
+    }
+
+    private void push(Expr expr, int depth) {
+        if (size == stack.length) {
+            stack = Arrays.copyOf(stack, size * 2);
+            depths = Arrays.copyOf(depths, size * 2);
+        }
+        stack[size] = expr;
+        depths[size++] = depth;
+    }
+
+    @Override
+    public Void visitBinaryExpr(Expr.Binary expr) {
+        push(expr.left, depth + 1);
+        push(expr.right, depth + 1);
+        return null;
+    }
+
+    @Override
+    public Void visitGroupingExpr(Expr.Grouping expr) {
+        push(expr.expression, depth + 1);
+        return null;
+    }
+
+    @Override
+    public Void visitLiteralExpr(Expr.Literal expr) {
+        return null;
+    }
+
+    @Override
+    public Void visitUnaryExpr(Expr.Unary expr) {
+        push(expr.right, depth + 1);
+        return null;
+    }
+}
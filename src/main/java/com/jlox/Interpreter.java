@@ -0,0 +1,241 @@
+package com.jlox;
+
+import static com.jlox.TokenType.*;
+
+//evaluates Expr trees. everything goes through the normal visitor, except wherever lox needs a
+//number anyway (- * / comparisons and number + number) the operands are evaluated through number(),
+//which returns a plain double, so a pure number subtree never boxes its intermediate results
+class Interpreter implements Expr.Visitor<Object> {
+
+    //thrown by number() when a subexpression turns out not to be a number. the value itself is left
+    //in nonNumber so it never has to be evaluated twice. no stack trace, its only used for control flow
+    private static final class NotANumber extends RuntimeException {
+        NotANumber() {
+            super(null, null, false, false);
+        }
+    }
+
+    private static final NotANumber NOT_A_NUMBER = new NotANumber();
+
+    private Object nonNumber = null;
+    private final Diagnostics diagnostics;
+
+
+    //old style, runtime errors go straight to the console through Lox
+    Interpreter() {
+        this(Lox.console());
+    }
+
+    Interpreter(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    //evaluates and hands back the printed value, or null if it hit a runtime error
+    String interpret(Expr expression) {
+        try {
+            return stringify(evaluate(expression));
+        } catch (RuntimeError error) {
+            diagnostics.runtimeError(error);
+            return null;
+        }
+    }
+
+    Object evaluate(Expr expr) {
+        return expr.accept(this);
+    }
+
+    //the unboxed path, same result as evaluate() when thats a number, otherwise throws NOT_A_NUMBER
+    //with the real value left in nonNumber
+    double number(Expr expr) {
+        //most common first, kept flat so a level of the tree is one frame like it is in accept()
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            TokenType type = binary.operator.type;
+
+            if (type == PLUS) return plus(binary);
+            if (type == MINUS) return leftOperand(binary) - rightOperand(binary);
+            if (type == STAR) return leftOperand(binary) * rightOperand(binary);
+            if (type == SLASH) return leftOperand(binary) / rightOperand(binary);
+        }
+
+        if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) expr).value;
+            if (value instanceof Double) return (Double) value;
+            return notANumber(value);
+        }
+
+        if (expr instanceof Expr.Grouping) {
+            return number(((Expr.Grouping) expr).expression);
+        }
+
+        if (expr instanceof Expr.Unary && ((Expr.Unary) expr).operator.type == MINUS) {
+            return negate((Expr.Unary) expr);
+        }
+
+        //comparisons, equality and ! all come out as booleans
+        return notANumber(evaluate(expr));
+    }
+
+    private double notANumber(Object value) {
+        nonNumber = value;
+        throw NOT_A_NUMBER;
+    }
+
+    private double negate(Expr.Unary expr) {
+        try {
+            return -number(expr.right);
+        } catch (NotANumber error) {
+            throw new RuntimeError(expr.operator, "Operand must be a number.");
+        }
+    }
+
+    private double arithmetic(Expr.Binary expr) {
+        double left = leftOperand(expr);
+        double right = rightOperand(expr);
+
+        switch (expr.operator.type) {
+            case MINUS: return left - right;
+            case STAR: return left * right;
+            default: return left / right;
+        }
+    }
+
+    private boolean comparison(Expr.Binary expr) {
+        double left = leftOperand(expr);
+        double right = rightOperand(expr);
+
+        switch (expr.operator.type) {
+            case GREATER: return left > right;
+            case GREATER_EQUAL: return left >= right;
+            case LESS: return left < right;
+            default: return left <= right;
+        }
+    }
+
+    private double leftOperand(Expr.Binary expr) {
+        try {
+            return number(expr.left);
+        } catch (NotANumber error) {
+            //the right side still runs first, if it has an error of its own thats the one that gets reported
+            evaluate(expr.right);
+            throw new RuntimeError(expr.operator, "Operands must be numbers.");
+        }
+    }
+
+    private double rightOperand(Expr.Binary expr) {
+        try {
+            return number(expr.right);
+        } catch (NotANumber error) {
+            throw new RuntimeError(expr.operator, "Operands must be numbers.");
+        }
+    }
+
+    //+ is the one operator that goes either way, numbers stay unboxed and a concatenated string
+    //comes back through nonNumber
+    private double plus(Expr.Binary expr) {
+        double left = 0;
+        double right = 0;
+        Object leftValue = null;
+        Object rightValue = null;
+        boolean numbers = true;
+
+        try {
+            left = number(expr.left);
+        } catch (NotANumber error) {
+            leftValue = nonNumber;
+            numbers = false;
+        }
+
+        try {
+            right = number(expr.right);
+        } catch (NotANumber error) {
+            rightValue = nonNumber;
+            numbers = false;
+        }
+
+        if (numbers) return left + right;
+
+        if (leftValue instanceof String && rightValue instanceof String) {
+            return notANumber((String) leftValue + (String) rightValue);
+        }
+
+        throw new RuntimeError(expr.operator, "Operands must be two numbers or two strings.");
+    }
+
+
+    @Override
+    public Object visitBinaryExpr(Expr.Binary expr) {
+        switch (expr.operator.type) {
+            case MINUS:
+            case STAR:
+            case SLASH:
+                return arithmetic(expr);
+            case PLUS:
+                try {
+                    return plus(expr);
+                } catch (NotANumber error) {
+                    return nonNumber;
+                }
+            case GREATER:
+            case GREATER_EQUAL:
+            case LESS:
+            case LESS_EQUAL:
+                return comparison(expr);
+            case EQUAL_EQUAL:
+                return isEqual(evaluate(expr.left), evaluate(expr.right));
+            case BANG_EQUAL:
+                return !isEqual(evaluate(expr.left), evaluate(expr.right));
+            default:
+                //unreachable, the parser only builds the operators above
+                return null;
+        }
+    }
+
+    @Override
+    public Object visitGroupingExpr(Expr.Grouping expr) {
+        return evaluate(expr.expression);
+    }
+
+    @Override
+    public Object visitLiteralExpr(Expr.Literal expr) {
+        return expr.value;
+    }
+
+    @Override
+    public Object visitUnaryExpr(Expr.Unary expr) {
+        if (expr.operator.type == MINUS) return negate(expr);
+
+        return !isTruthy(evaluate(expr.right));
+    }
+
+
+    //lox rules shared with anything else that runs Expr trees
+
+    //false and nil are falsey, everything else is truthy
+    static boolean isTruthy(Object value) {
+        if (value == null) return false;
+        if (value instanceof Boolean) return (boolean) value;
+        return true;
+    }
+
+    static boolean isEqual(Object left, Object right) {
+        if (left == null && right == null) return true;
+        if (left == null) return false;
+        return left.equals(right);
+    }
+
+    static String stringify(Object value) {
+        if (value == null) return "nil";
+
+        if (value instanceof Double) {
+            //integers print without the .0
+            String text = value.toString();
+            if (text.endsWith(".0")) {
+                text = text.substring(0, text.length() - 2);
+            }
+            return text;
+        }
+
+        return value.toString();
+    }
+}
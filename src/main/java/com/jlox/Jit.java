@@ -0,0 +1,106 @@
+package com.jlox;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//tiered evaluation for expressions that get run over and over. every expression starts on the tree
+//walker, once its been evaluated HOT_THRESHOLD times it gets compiled to a jvm class (see JitCompiler).
+//anything the compiler cant handle just stays on the tree walker.
+//not thread safe, one per thread like Interpreter
+class Jit {
+
+    //what a generated class implements
+    interface Compiled {
+        double evaluate();
+    }
+
+    static final int HOT_THRESHOLD = 1000;
+
+    //compiled classes kept alive at once, past this the least recently used gets dropped and its
+    //hidden class can be unloaded by the next gc
+    static final int MAX_COMPILED = 256;
+
+    private static class Entry {
+        int count = 0;
+        Compiled compiled = null;
+        boolean unsupported = false; //tried once and the compiler said no, dont try again
+    }
+
+    private final Interpreter interpreter;
+    private final JitCompiler compiler = new JitCompiler();
+    private final int threshold;
+    private int compiledCount = 0;
+
+    //keyed by the tree itself, access ordered so eviction is lru
+    private final Map<Expr, Entry> entries = new LinkedHashMap<Expr, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Expr, Entry> eldest) {
+            //counters for cold expressions are cheap, but dont let them pile up forever either
+            if (size() <= MAX_COMPILED * 16) return false;
+            if (eldest.getValue().compiled != null) compiledCount--;
+            return true;
+        }
+    };
+
+
+    Jit(Interpreter interpreter) {
+        this(interpreter, HOT_THRESHOLD);
+    }
+
+    Jit(Interpreter interpreter, int threshold) {
+        this.interpreter = interpreter;
+        this.threshold = threshold;
+    }
+
+    //same result as interpreter.evaluate(expr), whichever tier ends up running it
+    Object evaluate(Expr expr) {
+        Entry entry = entries.get(expr);
+        if (entry == null) {
+            entry = new Entry();
+            entries.put(expr, entry);
+        }
+
+        if (entry.compiled != null) return entry.compiled.evaluate();
+
+        if (!entry.unsupported && ++entry.count >= threshold) {
+            entry.compiled = compiler.compile(expr);
+
+            if (entry.compiled == null) {
+                entry.unsupported = true;
+            } else {
+                compiledCount++;
+                if (compiledCount > MAX_COMPILED) evictCompiled();
+                return entry.compiled.evaluate();
+            }
+        }
+
+        return interpreter.evaluate(expr);
+    }
+
+    //drops the least recently used compiled class, its counter starts over so it can get hot again
+    private void evictCompiled() {
+        for (Entry entry : entries.values()) {
+            if (entry.compiled != null) {
+                entry.compiled = null;
+                entry.count = 0;
+                compiledCount--;
+                return;
+            }
+        }
+    }
+
+    boolean isCompiled(Expr expr) {
+        Entry entry = entries.get(expr);
+        return entry != null && entry.compiled != null;
+    }
+
+    int compiledCount() {
+        return compiledCount;
+    }
+
+    //forget everything, all the generated classes become unloadable
+    void clear() {
+        entries.clear();
+        compiledCount = 0;
+    }
+}
@@ -0,0 +1,279 @@
+package com.jlox;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+//turns a numbers only Expr tree into a real jvm class, written out byte by byte (no classfile api on 17)
+//and loaded as a hidden class so hotspot can inline and optimize it like any other method.
+//the class is just
+//
+//    final class JitExpr implements Jit.Compiled {
+//        public double evaluate() { return <the tree as ldc2_w / dadd / dsub / dmul / ddiv / dneg>; }
+//    }
+//
+//theres no branches, so no stack map frames are needed
+class JitCompiler {
+
+    //hotspot wont compile a method with more bytecode than this (DontCompileHugeMethods), past it the
+    //generated class would only ever run in the jvms own interpreter, so leave those to the tree walker
+    static final int MAX_CODE = 8000;
+
+    private static final int MAX_CONSTANT_POOL = 0xffff;
+
+    //constant pool tags
+    private static final int UTF8 = 1;
+    private static final int DOUBLE = 6;
+    private static final int CLASS = 7;
+    private static final int METHODREF = 10;
+    private static final int NAME_AND_TYPE = 12;
+
+    //opcodes
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int LDC2_W = 0x14;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DNEG = 0x77;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+
+    //fixed constant pool entries, the doubles come after these
+    private static final int THIS_CLASS = 2;
+    private static final int OBJECT_CLASS = 4;
+    private static final int COMPILED_CLASS = 6;
+    private static final int INIT_NAME = 7;
+    private static final int VOID_DESCRIPTOR = 8;
+    private static final int OBJECT_INIT = 10;
+    private static final int EVALUATE_NAME = 11;
+    private static final int EVALUATE_DESCRIPTOR = 12;
+    private static final int CODE_ATTRIBUTE = 13;
+    private static final int FIRST_DOUBLE = 14;
+
+    private static final MethodHandles.Lookup lookup = MethodHandles.lookup();
+
+    //per compile state
+    private byte[] code;
+    private int length;
+    private int depth;
+    private int maxDepth;
+    private Map<Long, Integer> doubles; //raw bits to constant pool index, so -0.0 and 0.0 stay apart
+    private int poolSize;
+
+
+    //null when the tree has something the generator doesnt handle or is too big to be worth it
+    Jit.Compiled compile(Expr expr) {
+        code = new byte[256];
+        length = 0;
+        depth = 0;
+        maxDepth = 0;
+        doubles = new HashMap<>();
+        poolSize = FIRST_DOUBLE;
+
+        try {
+            if (!emit(expr)) return null;
+            op(DRETURN);
+            if (length > MAX_CODE) return null;
+
+            return load(classBytes());
+        } finally {
+            code = null;
+            doubles = null;
+        }
+    }
+
+    //the tree is emitted operands first, same shape as the bytecode Compiler. false means give up
+    private boolean emit(Expr expr) {
+        if (length > MAX_CODE) return false;
+
+        if (expr instanceof Expr.Literal) {
+            Object value = ((Expr.Literal) expr).value;
+            if (!(value instanceof Double)) return false;
+            return constant((Double) value);
+        }
+
+        if (expr instanceof Expr.Grouping) {
+            return emit(((Expr.Grouping) expr).expression);
+        }
+
+        if (expr instanceof Expr.Unary) {
+            Expr.Unary unary = (Expr.Unary) expr;
+            if (unary.operator.type != TokenType.MINUS) return false;
+            if (!emit(unary.right)) return false;
+            op(DNEG);
+            return true;
+        }
+
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            int op;
+            switch (binary.operator.type) {
+                case PLUS: op = DADD; break;
+                case MINUS: op = DSUB; break;
+                case STAR: op = DMUL; break;
+                case SLASH: op = DDIV; break;
+                default: return false;
+            }
+
+            if (!emit(binary.left) || !emit(binary.right)) return false;
+            op(op);
+            depth--;
+            return true;
+        }
+
+        return false;
+    }
+
+    private boolean constant(double value) {
+        long bits = Double.doubleToRawLongBits(value);
+
+        if (bits == 0L) {
+            op(DCONST_0);
+        } else if (value == 1.0) {
+            op(DCONST_1);
+        } else {
+            Integer index = doubles.get(bits);
+            if (index == null) {
+                if (poolSize + 2 > MAX_CONSTANT_POOL) return false;
+                index = poolSize;
+                doubles.put(bits, index);
+                poolSize += 2; //a double takes two constant pool slots
+            }
+
+            op(LDC2_W);
+            u1(index >> 8);
+            u1(index);
+        }
+
+        depth++;
+        if (depth > maxDepth) maxDepth = depth;
+        return true;
+    }
+
+    private void op(int op) {
+        u1(op);
+    }
+
+    private void u1(int value) {
+        if (length == code.length) code = Arrays.copyOf(code, length * 2);
+        code[length++] = (byte) value;
+    }
+
+    private byte[] classBytes() {
+        ClassBytes out = new ClassBytes(length + doubles.size() * 9 + 256);
+
+        out.u4(0xCAFEBABE);
+        out.u2(0);
+        out.u2(61); //java 17
+
+        out.u2(poolSize);
+        out.utf8("com/jlox/JitExpr");
+        out.u1(CLASS).u2(1);
+        out.utf8("java/lang/Object");
+        out.u1(CLASS).u2(3);
+        out.utf8("com/jlox/Jit$Compiled");
+        out.u1(CLASS).u2(5);
+        out.utf8("<init>");
+        out.utf8("()V");
+        out.u1(NAME_AND_TYPE).u2(INIT_NAME).u2(VOID_DESCRIPTOR);
+        out.u1(METHODREF).u2(OBJECT_CLASS).u2(9);
+        out.utf8("evaluate");
+        out.utf8("()D");
+        out.utf8("Code");
+
+        //doubles in index order
+        long[] byIndex = new long[poolSize];
+        for (Map.Entry<Long, Integer> entry : doubles.entrySet()) byIndex[entry.getValue()] = entry.getKey();
+        for (int i = FIRST_DOUBLE; i < poolSize; i += 2) {
+            out.u1(DOUBLE).u8(byIndex[i]);
+        }
+
+        out.u2(0x0010 | 0x0020); //final, super
+        out.u2(THIS_CLASS);
+        out.u2(OBJECT_CLASS);
+        out.u2(1).u2(COMPILED_CLASS);
+        out.u2(0); //no fields
+
+        out.u2(2);
+
+        //public JitExpr() { super(); }
+        out.u2(0x0001).u2(INIT_NAME).u2(VOID_DESCRIPTOR).u2(1);
+        out.u2(CODE_ATTRIBUTE).u4(12 + 5);
+        out.u2(1).u2(1); //max stack, max locals
+        out.u4(5);
+        out.u1(ALOAD_0).u1(INVOKESPECIAL).u2(OBJECT_INIT).u1(RETURN);
+        out.u2(0).u2(0); //no exception table, no attributes
+
+        //public double evaluate()
+        out.u2(0x0001).u2(EVALUATE_NAME).u2(EVALUATE_DESCRIPTOR).u2(1);
+        out.u2(CODE_ATTRIBUTE).u4(12 + length);
+        out.u2(Math.max(maxDepth, 1) * 2).u2(1); //every double is two stack slots
+        out.u4(length);
+        out.bytes(code, length);
+        out.u2(0).u2(0);
+
+        out.u2(0); //no class attributes
+        return out.toByteArray();
+    }
+
+    //defined without STRONG, so the class is unloaded once nothing references the instance anymore
+    private static Jit.Compiled load(byte[] bytes) {
+        try {
+            MethodHandles.Lookup hidden = lookup.defineHiddenClass(bytes, true);
+            return (Jit.Compiled) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable error) {
+            //a class we wrote failing to load is a bug here, not in the script
+            throw new IllegalStateException("Generated class failed to load", error);
+        }
+    }
+
+    //big endian writer for the class file
+    private static class ClassBytes {
+        private byte[] bytes;
+        private int size = 0;
+
+        ClassBytes(int capacity) {
+            bytes = new byte[capacity];
+        }
+
+        ClassBytes u1(int value) {
+            if (size == bytes.length) bytes = Arrays.copyOf(bytes, size * 2);
+            bytes[size++] = (byte) value;
+            return this;
+        }
+
+        ClassBytes u2(int value) {
+            return u1(value >> 8).u1(value);
+        }
+
+        ClassBytes u4(int value) {
+            return u2(value >>> 16).u2(value);
+        }
+
+        ClassBytes u8(long value) {
+            return u4((int) (value >>> 32)).u4((int) value);
+        }
+
+        //only ever called with ascii names
+        ClassBytes utf8(String value) {
+            u1(UTF8).u2(value.length());
+            for (int i = 0; i < value.length(); i++) u1(value.charAt(i));
+            return this;
+        }
+
+        ClassBytes bytes(byte[] source, int length) {
+            for (int i = 0; i < length; i++) u1(source[i]);
+            return this;
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, size);
+        }
+    }
+}
@@ -3,9 +3,13 @@ package com.jlox;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.ArrayList;
 import java.util.List;
 
 import static com.jlox.TokenType.*;
@@ -14,25 +18,82 @@ public class Lox {
 
     public static boolean hadError = false;
 
+    //command line switches
+    static boolean parallelScan = false; //--parallel, lex big scripts on every core
+    static boolean optimize = false; //--optimize, fold and simplify the tree before printing and running it
+    static boolean shareNodes = false; //--share, identical subtrees are parsed into one shared node
+    static ParseCache cache = null; //--cache, reuse parsed trees of unchanged scripts from disk
+    static boolean showStats = false; //--stats, time, throughput and allocation of each phase on stderr
+    static boolean serve = false; //--serve, stay up and take scripts from LoxClient over a socket
+
 
     public static void main(String[] args) throws IOException {
-        if (args.length > 1) {
-          System.out.println("Usage: jlox [script]");
-          System.exit(64); 
-        } else if (args.length == 1) {
-          runFile(args[0]);
+        List<String> paths = new ArrayList<>();
+        for (String arg : args) {
+            if (arg.equals("--parallel")) {
+                parallelScan = true;
+            } else if (arg.equals("--optimize")) {
+                optimize = true;
+            } else if (arg.equals("--share")) {
+                shareNodes = true;
+            } else if (arg.equals("--cache")) {
+                cache = ParseCache.defaultCache();
+            } else if (arg.equals("--stats")) {
+                showStats = true;
+            } else if (arg.equals("--serve")) {
+                serve = true;
+            } else if (arg.startsWith("--")) {
+                System.out.println("Usage: jlox [--parallel] [--optimize] [--share] [--cache] [--stats] [script | scripts... | directory]");
+                System.out.println("       jlox --serve [flags] [socket path | port]");
+                System.exit(64);
+            } else {
+                paths.add(arg);
+            }
+        }
+
+        if (serve) {
+            if (paths.size() > 1) {
+                System.out.println("Usage: jlox --serve [flags] [socket path | port]");
+                System.exit(64);
+            }
+            String address = paths.isEmpty() ? LoxServer.defaultAddress() : paths.get(0);
+            new LoxServer(LoxServer.address(address)).serve();
+            return;
+        }
+
+        //several scripts (or a directory of them) all go through one warm jvm
+        if (paths.size() > 1 || (paths.size() == 1 && Files.isDirectory(Paths.get(paths.get(0))))) {
+          System.exit(new LoxBatch(paths).run());
+        } else if (paths.size() == 1) {
+          runFile(paths.get(0));
         } else {
           runPrompt();
         }
     }
 
-    //this function reads the file as binary(more efficient then char by char) and converts that info to a string to then be lexed
+    //this function memory maps a big file and lexes straight off the bytes, so a huge script is never
+    //copied onto the heap as one big String
     public static void runFile(String path) throws IOException {
-        //read file as binary
-        byte[] bytes = Files.readAllBytes(Paths.get(path));
-        String str = new String(bytes, Charset.defaultCharset()); //specifies ascii encodeing based on jvm
-        run(str); //lexes our string
-        if (hadError) System.exit(65);
+        int status = run(readSource(Paths.get(path))); //lexes our source
+        if (status != OK) System.exit(status);
+    }
+
+    static CharSequence readSource(Path file) throws IOException {
+        Charset charset = Charset.defaultCharset(); //same encoding the jvm would pick for a String
+
+        //mappings outlive the run until a gc frees them, only worth it for files that would hurt as a String
+        if (Files.size(file) < MappedSource.MIN_SIZE) {
+            return new String(Files.readAllBytes(file), charset);
+        }
+
+        CharSequence source = MappedSource.map(file, charset);
+        if (source == null) {
+            //charsets like utf-16 cant be lexed a byte at a time, so decode the old way
+            byte[] bytes = Files.readAllBytes(file);
+            source = new String(bytes, charset);
+        }
+
+        return source;
     }
 
     //make an interactive repl for the user
@@ -59,39 +120,153 @@ public class Lox {
         }
     }
 
-    public static void run(String script) {
+    //hands back one of the exit codes below, runtime errors only show up in that
+    public static int run(CharSequence script) {
+        int status = run(script, System.out, System.err);
+        if (status == SYNTAX_ERROR) hadError = true;
+        return status;
+    }
 
-        //will take in our script as a string and have a an attribute with a list of tokens
-        Scanner scanner = new Scanner(script);
-        List<Token> tokens = scanner.scanTokens();
-        Parser parser = new Parser(tokens);
-        Expr expression = parser.parse();
+    //exit codes, same ones runFile exits with
+    static final int OK = 0;
+    static final int SYNTAX_ERROR = 65;
+    static final int RUNTIME_ERROR = 70;
+
+    //does the actual work of run, printing to out and err instead of the console so the
+    //server can hand each request its own pair. touches no shared state besides the flags
+    static int run(CharSequence script, PrintStream out, PrintStream err) {
+        Stats stats = showStats ? new Stats() : null;
+        try {
+            return run(script, out, err, stats);
+        } finally {
+            if (stats != null) stats.printTo(err);
+        }
+    }
+
+    private static int run(CharSequence script, PrintStream out, PrintStream err, Stats stats) {
+        Diagnostics diagnostics = new Diagnostics();
+
+        //scanning happens inside parsing, the parser pulls tokens as it goes
+        if (stats != null) stats.begin();
+        Expr expression = cache != null ? cache.parse(script, diagnostics) : parse(script, diagnostics);
+        if (stats != null) stats.end("scan+parse", script.length(), "chars");
 
     // Stop if there was a syntax error.
-        if (hadError) return;
+        if (diagnostics.hadError()) {
+            for (Diagnostics.Error error : diagnostics.errors()) {
+                err.println(error);
+            }
+            return SYNTAX_ERROR;
+        }
+
+        //the later phases are measured in nodes, counted outside the timings
+        long nodes = stats != null ? ExprShape.of(expression).nodes : 0;
+
+        if (optimize) {
+            if (stats != null) stats.begin();
+            Optimizer optimizer = new Optimizer();
+            expression = optimizer.optimize(expression);
+            if (stats != null) stats.end("optimize", nodes, "nodes");
+            if (stats != null) nodes = ExprShape.of(expression).nodes;
+
+            err.println("[optimizer] removed " + optimizer.removed() + " nodes");
+        }
 
-        System.out.println(new ASTprinter().print(expression));
+        if (stats != null) stats.begin();
+        try {
+            new ASTprinter().print(expression, out);
+        } catch (IOException error) {
+            throw new UncheckedIOException(error); //PrintStream keeps its own errors, never happens
+        }
+        out.println();
+        if (stats != null) stats.end("print", nodes, "nodes");
+
+        if (stats != null) stats.begin();
+        String value = new Interpreter(diagnostics).interpret(expression);
+        if (stats != null) stats.end("interpret", nodes, "nodes");
 
+        if (value == null) {
+            for (RuntimeError error : diagnostics.runtimeErrors()) {
+                err.println(Diagnostics.format(error));
+            }
+            return RUNTIME_ERROR;
+        }
+
+        out.println(value);
+        return OK;
     }
 
-    static void error(int line, String message) {
-        report(line, "", message);
-      }
+    //scans and parses, nothing here touches shared state so any number of these can run at once
+    static Expr parse(CharSequence script, Diagnostics diagnostics) {
+        //will take in our script as a string and have a an attribute with a list of tokens
+        Expr expression;
+        ExprFactory factory = factory();
+        if (parallelScan) {
+            //needs the whole token list up front, so this trades memory for cores
+            List<Token> tokens = new ParallelScanner(script, diagnostics).scanTokens();
+            expression = new Parser(tokens, diagnostics).using(factory).parse();
+        } else {
+            Scanner scanner = new Scanner(script, diagnostics);
+            Parser parser = new Parser(scanner).using(factory);
+            expression = parser.parse();
 
-    static void error(Token token, String message) {
-        if (token.type == EOF) {
-            report(token.line, " at End", message);
+            //the parser stops pulling after one expression, run the rest through so lexical errors still get reported
+            while (scanner.nextToken().type != EOF);
         }
 
-        else {
-            report(token.line, " at " + token.lexum, message);
+        return expression;
+    }
+
+    //what every tree gets built with, ParseCache included, a fresh one per script since hash
+    //consing only shares nodes within one factory
+    static ExprFactory factory() {
+        return shareNodes ? ExprFactory.hashConsing() : ExprFactory.plain();
+    }
+
+    //the old global error handling, prints straight away and sets hadError,
+    //used by anything that doesnt bring its own Diagnostics
+    private static final Diagnostics console = new Diagnostics() {
+        private int count = 0; //nothing is kept, but the jfr events want a count
+        private boolean hadRuntimeError = false;
+
+        @Override
+        synchronized void add(Diagnostics.Error error) {
+            System.err.println(error);
+            hadError = true;
+            count++;
+        }
+
+        @Override
+        synchronized int errorCount() {
+            return count;
         }
 
+        @Override
+        boolean hadError() {
+            return hadError;
+        }
 
+        @Override
+        synchronized void runtimeError(RuntimeError error) {
+            System.err.println(format(error));
+            hadRuntimeError = true;
+        }
+
+        @Override
+        synchronized boolean hadRuntimeError() {
+            return hadRuntimeError;
+        }
+    };
+
+    static Diagnostics console() {
+        return console;
     }
-    
-    private static void report(int line, String where, String message) {
-        System.err.println("[line " + line + "] Error" + where + ": " + message);
-        hadError = true;
+
+    static void error(int line, String message) {
+        console.error(line, message);
+      }
+
+    static void error(Token token, String message) {
+        console.error(token, message);
     }
 }
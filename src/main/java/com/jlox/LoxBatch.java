@@ -0,0 +1,142 @@
+package com.jlox;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//front ends a whole set of scripts in one jvm, a few at a time, and prints each files results
+//in the order the files were given no matter which one finishes first. every file goes through
+//Lox.run like a single script would, so the flags (--cache, --optimize, --stats...) all apply
+class LoxBatch {
+
+    //exit codes, Lox.run's plus one for a file that cant be read. the highest one across all the
+    //files wins, so a runtime error anywhere beats a syntax error somewhere else
+    static final int OK = Lox.OK;
+    static final int NO_INPUT = 66;
+
+    //everything one file produced, held until its turn to be printed
+    static class Report {
+        final Path path;
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        final ByteArrayOutputStream err = new ByteArrayOutputStream();
+        int status = OK;
+
+        Report(Path path) {
+            this.path = path;
+        }
+    }
+
+    private final List<String> args;
+
+    LoxBatch(List<String> args) {
+        this.args = args;
+    }
+
+    //returns the exit code for the whole batch
+    int run() throws IOException {
+        List<Path> files = expand();
+        int threads = Math.max(1, Math.min(files.size(), Runtime.getRuntime().availableProcessors()));
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+
+        List<Future<Report>> reports = new ArrayList<>();
+        for (Path file : files) {
+            reports.add(pool.submit(() -> check(file)));
+        }
+        pool.shutdown();
+
+        PrintStream out = new PrintStream(new BufferedOutputStream(System.out, 1 << 16), false);
+        PrintStream err = new PrintStream(new BufferedOutputStream(System.err, 1 << 16), false);
+        int status = OK;
+
+        for (Future<Report> future : reports) {
+            Report report = join(future);
+            out.append("==> ").append(report.path.toString()).append(" <==\n");
+            report.out.writeTo(out);
+
+            //every line of a files errors says which file its from
+            for (String line : report.err.toString(StandardCharsets.UTF_8).split("\n")) {
+                if (!line.isEmpty()) err.append(report.path.toString()).append(": ").append(line).append('\n');
+            }
+
+            status = Math.max(status, report.status);
+        }
+
+        out.flush();
+        err.flush();
+        return status;
+    }
+
+    //directories are searched for .lox files, in a stable order so output is repeatable
+    private List<Path> expand() throws IOException {
+        List<Path> files = new ArrayList<>();
+
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            if (!Files.isDirectory(path)) {
+                files.add(path);
+                continue;
+            }
+
+            try (Stream<Path> walk = Files.walk(path)) {
+                files.addAll(walk
+                    .filter(file -> Files.isRegularFile(file) && file.toString().endsWith(".lox"))
+                    .sorted()
+                    .collect(Collectors.toList()));
+            }
+        }
+
+        return files;
+    }
+
+    //same as Lox.runFile, but everything lands in the report instead of on the console
+    private static Report check(Path file) {
+        Report report = new Report(file);
+        PrintStream out = new PrintStream(report.out, false, StandardCharsets.UTF_8);
+        PrintStream err = new PrintStream(report.err, false, StandardCharsets.UTF_8);
+
+        CharSequence script;
+        try {
+            script = Lox.readSource(file);
+        } catch (NoSuchFileException error) {
+            err.println("No such file");
+            err.flush();
+            report.status = NO_INPUT;
+            return report;
+        } catch (IOException error) {
+            err.println("Could not read file: " + error.getMessage());
+            err.flush();
+            report.status = NO_INPUT;
+            return report;
+        }
+
+        report.status = Lox.run(script, out, err);
+        out.flush();
+        err.flush();
+        return report;
+    }
+
+    private static Report join(Future<Report> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException error) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(error);
+        } catch (ExecutionException error) {
+            throw new RuntimeException(error.getCause());
+        }
+    }
+}
@@ -0,0 +1,125 @@
+package com.jlox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.SocketAddress;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+//thin front end for LoxServer, runs one script (or the repl) and prints and exits the same way Lox does.
+//flags like --optimize belong to the server, start it with them (jlox --serve --optimize), a client
+//cant change them per request. with no server running it just runs Lox in this jvm
+//
+//  jlox-client [--connect socket path | port] [script | -]
+//  a script is sent as a path over a unix socket and read here and sent as the source over tcp,
+//  - sends stdin as the source, nothing at all is the repl
+class LoxClient {
+
+    private final DataInputStream in;
+    private final DataOutputStream out;
+    private final boolean local; //unix socket, the server reads scripts itself
+
+    LoxClient(SocketChannel channel, boolean local) {
+        this.local = local;
+        this.in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(channel)));
+        this.out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+    }
+
+    public static void main(String[] args) throws IOException {
+        String address = LoxServer.defaultAddress();
+        int first = 0;
+        if (args.length >= 2 && args[0].equals("--connect")) {
+            address = args[1];
+            first = 2;
+        }
+
+        if (args.length - first > 1 || (args.length > first && args[first].startsWith("--"))) {
+            System.out.println("Usage: jlox-client [--connect socket path | port] [script | -]");
+            System.exit(64);
+        }
+
+        SocketAddress server = LoxServer.address(address);
+        SocketChannel channel;
+        try {
+            channel = SocketChannel.open(server);
+        } catch (IOException error) {
+            System.err.println("[client] no server at " + address + ", running locally");
+            if (args.length > first && args[first].equals("-")) {
+                System.exit(Lox.run(new String(System.in.readAllBytes(), StandardCharsets.UTF_8), System.out, System.err));
+            }
+            Lox.main(Arrays.copyOfRange(args, first, args.length));
+            return;
+        }
+
+        try (channel) {
+            LoxClient client = new LoxClient(channel, server instanceof UnixDomainSocketAddress);
+            if (args.length == first) {
+                client.runPrompt();
+                return;
+            }
+
+            int status;
+            if (args[first].equals("-")) {
+                status = client.send(LoxServer.SOURCE, new String(System.in.readAllBytes(), StandardCharsets.UTF_8));
+            } else {
+                status = client.sendFile(args[first]);
+            }
+            System.exit(status);
+        }
+    }
+
+    //same as Lox.runPrompt, each line is a script to run, but errors dont end the session
+    void runPrompt() throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+
+        while (true) {
+            System.out.println("> ");
+            String line = reader.readLine();
+            if (line == null) break;
+
+            sendFile(line);
+        }
+    }
+
+    //a tcp server wont read files for us, so the script goes as its source there
+    int sendFile(String path) throws IOException {
+        Path file = Paths.get(path).toAbsolutePath();
+        if (local) return send(LoxServer.PATH, file.toString());
+
+        String source;
+        try {
+            source = Lox.readSource(file).toString();
+        } catch (IOException error) {
+            System.err.println(path + ": Could not read file: " + error.getMessage());
+            return LoxServer.NO_INPUT;
+        }
+        return send(LoxServer.SOURCE, source);
+    }
+
+    //one request, prints what the server printed and hands back the exit status
+    int send(byte kind, String text) throws IOException {
+        out.write(kind);
+        LoxServer.writeText(out, text);
+        out.flush();
+
+        int status = LoxServer.readStatus(in);
+        String stdout = LoxServer.readText(in);
+        String stderr = LoxServer.readText(in);
+
+        System.out.print(stdout);
+        System.out.flush();
+        System.err.print(stderr);
+        System.err.flush();
+        return status;
+    }
+}
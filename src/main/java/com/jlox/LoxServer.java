@@ -0,0 +1,248 @@
+package com.jlox;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.net.UnixDomainSocketAddress;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.PosixFilePermission;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.nio.file.attribute.UserPrincipal;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+//keeps one warm jvm around and runs scripts for LoxClient, so a script pays for a socket round trip
+//instead of jvm startup and a cold jit every time. each connection gets its own thread and every
+//request gets its own scanner, parser and Diagnostics, the only thing requests share is Lox's flags
+//
+//protocol, all ints big endian and all text utf-8 with an int length in front:
+//  request   kind byte (PATH or SOURCE), text
+//  response  exit status int, stdout text, stderr text
+//a connection can send any number of requests, one response comes back for each in order
+//
+//PATH makes the server read a file as itself, so its only taken over a unix socket, and that socket
+//only ever gets bound inside a directory no one else can get into (0700, ours). a socket file gets
+//the umask's permissions when its made, so chmodding it afterwards would leave a window. anyone on
+//the machine can reach a tcp port, tcp clients have to send the SOURCE
+class LoxServer {
+
+    static final byte PATH = 'P'; //text is a file for the server to read, absolute since our cwd isnt the clients
+    static final byte SOURCE = 'S'; //text is the script itself
+
+    static final int NO_INPUT = 66;
+    static final int NO_PERMISSION = 77;
+    static final int MAX_TEXT = 64 << 20; //any frame bigger than this is a broken or hostile peer
+
+    private final SocketAddress address;
+
+    LoxServer(SocketAddress address) {
+        this.address = address;
+    }
+
+    //a bare number is a localhost port, anything else is the path of a unix socket
+    static SocketAddress address(String spec) {
+        if (!spec.isEmpty() && spec.chars().allMatch(Character::isDigit)) {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(spec));
+        }
+        return UnixDomainSocketAddress.of(spec);
+    }
+
+    //where the server listens and the client connects when neither is told otherwise. XDG_RUNTIME_DIR
+    //is private to the user already, otherwise a directory of our own under the temp dir
+    static String defaultAddress() {
+        String address = System.getProperty("jlox.server");
+        if (address != null) return address;
+
+        String runtime = System.getenv("XDG_RUNTIME_DIR");
+        Path directory = runtime != null && !runtime.isEmpty()
+            ? Paths.get(runtime)
+            : Paths.get(System.getProperty("java.io.tmpdir"), "jlox-" + System.getProperty("user.name"));
+        return directory.resolve("jlox.sock").toString();
+    }
+
+    //runs until the jvm is killed
+    void serve() throws IOException {
+        try (ServerSocketChannel server = open()) {
+            System.err.println("[server] listening on " + address);
+
+            //jdk 17 has no virtual threads, a cached pool at least reuses threads between clients
+            ExecutorService pool = Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(task, "jlox-request");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            while (true) {
+                SocketChannel client = server.accept();
+                pool.execute(() -> handle(client));
+            }
+        }
+    }
+
+    private ServerSocketChannel open() throws IOException {
+        if (!(address instanceof UnixDomainSocketAddress)) {
+            return ServerSocketChannel.open().bind(address);
+        }
+
+        Path file = ((UnixDomainSocketAddress) address).getPath().toAbsolutePath();
+        privateDirectory(file.getParent());
+
+        //a socket file left behind by a server that died would make bind fail, but dont steal a live one
+        if (Files.exists(file)) {
+            if (isLive(address)) throw new IOException("a server is already listening on " + file);
+            Files.deleteIfExists(file);
+        }
+
+        ServerSocketChannel server = ServerSocketChannel.open(StandardProtocolFamily.UNIX).bind(address);
+        try {
+            //not what keeps others out, thats the directory, just tidier
+            Files.setPosixFilePermissions(file, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException ignored) {
+        }
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException ignored) {
+            }
+        }));
+        return server;
+    }
+
+    //makes directory 0700 if its not there, and refuses one someone else owns or can get into
+    private static void privateDirectory(Path directory) throws IOException {
+        Set<PosixFilePermission> owner = PosixFilePermissions.fromString("rwx------");
+        try {
+            if (Files.notExists(directory)) {
+                Files.createDirectories(directory, PosixFilePermissions.asFileAttribute(owner));
+                Files.setPosixFilePermissions(directory, owner); //createDirectories goes through the umask
+            }
+
+            UserPrincipal me = directory.getFileSystem().getUserPrincipalLookupService()
+                .lookupPrincipalByName(System.getProperty("user.name"));
+            if (!Files.getOwner(directory).equals(me) || !owner.containsAll(Files.getPosixFilePermissions(directory))) {
+                throw new IOException(directory + " has to be a directory only we can get into (owned by us, mode 700) to hold the socket");
+            }
+        } catch (UnsupportedOperationException ignored) {
+            //not a posix file system, nothing we can check
+        }
+    }
+
+    private static boolean isLive(SocketAddress address) {
+        try {
+            SocketChannel.open(address).close();
+            return true;
+        } catch (IOException error) {
+            return false;
+        }
+    }
+
+    //one connection, answers requests until the client hangs up
+    private void handle(SocketChannel client) {
+        boolean local = address instanceof UnixDomainSocketAddress;
+        try (client;
+             DataInputStream in = new DataInputStream(new BufferedInputStream(Channels.newInputStream(client)));
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(client)))) {
+
+            while (true) {
+                int kind = in.read();
+                if (kind == -1) return;
+
+                String text = readText(in);
+                ByteArrayOutputStream stdout = new ByteArrayOutputStream();
+                ByteArrayOutputStream stderr = new ByteArrayOutputStream();
+                int status = run((byte) kind, text, local,
+                    new PrintStream(stdout, false, StandardCharsets.UTF_8),
+                    new PrintStream(stderr, false, StandardCharsets.UTF_8));
+
+                out.writeInt(status);
+                writeBytes(out, clip(stdout.toByteArray()));
+                writeBytes(out, clip(stderr.toByteArray()));
+                out.flush();
+            }
+        } catch (IOException | RuntimeException error) {
+            //a client going away mid request only ends that connection
+            System.err.println("[server] dropped connection: " + error);
+        }
+    }
+
+    private static int run(byte kind, String text, boolean local, PrintStream out, PrintStream err) {
+        CharSequence script;
+        if (kind == SOURCE) {
+            script = text;
+        } else if (kind == PATH) {
+            if (!local) {
+                err.println(text + ": Paths are only read for unix socket clients, send the source");
+                return NO_PERMISSION;
+            }
+            try {
+                script = Lox.readSource(Paths.get(text));
+            } catch (NoSuchFileException error) {
+                err.println(text + ": No such file");
+                return NO_INPUT;
+            } catch (IOException error) {
+                err.println(text + ": Could not read file: " + error.getMessage());
+                return NO_INPUT;
+            }
+        } else {
+            err.println("unknown request kind " + kind);
+            return NO_INPUT;
+        }
+
+        return Lox.run(script, out, err);
+    }
+
+    //output past MAX_TEXT would be a frame the client refuses, so it gets cut with a note instead
+    private static byte[] clip(byte[] output) {
+        if (output.length <= MAX_TEXT) return output;
+
+        byte[] note = "\n[server] output truncated\n".getBytes(StandardCharsets.UTF_8);
+        byte[] clipped = Arrays.copyOf(output, MAX_TEXT);
+        System.arraycopy(note, 0, clipped, MAX_TEXT - note.length, note.length);
+        return clipped;
+    }
+
+    //framing, shared with LoxClient
+    static void writeText(DataOutputStream out, String text) throws IOException {
+        writeBytes(out, text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static void writeBytes(DataOutputStream out, byte[] bytes) throws IOException {
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readText(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > MAX_TEXT) throw new IOException("bad frame length " + length);
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    static int readStatus(DataInputStream in) throws IOException {
+        try {
+            return in.readInt();
+        } catch (EOFException error) {
+            throw new IOException("server hung up");
+        }
+    }
+}
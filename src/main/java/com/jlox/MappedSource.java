@@ -0,0 +1,105 @@
+package com.jlox;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+//a read only view of a memory mapped source file, the scanner sees one char per byte
+//so offsets are byte offsets and the file is never widened into one big heap String.
+//
+//java has no way to unmap, the mapping (address space and the file handle behind it) only goes away
+//once the gc collects the buffer. so dont keep one past the run its for, and dont map small files at
+//all, a loop over lots of them would pile mappings up until some gc gets round to them. see MIN_SIZE
+class MappedSource implements CharSequence {
+
+    //below this a file is cheaper read into a String than mapped, and the heap copy is gone with the run
+    static final long MIN_SIZE = 1 << 20;
+
+    private final ByteBuffer bytes;
+    private final Charset charset;
+
+    private MappedSource(ByteBuffer bytes, Charset charset) {
+        this.bytes = bytes;
+        this.charset = charset;
+    }
+
+    //maps the whole file, returns null if the charset cant be lexed a byte at a time
+    static MappedSource map(Path path, Charset charset) throws IOException {
+        if (!isByteLexable(charset)) return null;
+
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            //a single mapping (and our int offsets) tops out at 2GB
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Source file too large to map: " + path);
+            }
+
+            //the mapping stays valid after the channel is closed
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new MappedSource(buffer, charset);
+        }
+    }
+
+    //every lox token is ascii, so any charset where ascii bytes always mean ascii chars
+    //can be lexed straight off the bytes, non ascii bytes only show up inside strings and comments
+    static boolean isByteLexable(Charset charset) {
+        return charset.equals(StandardCharsets.UTF_8)
+            || charset.equals(StandardCharsets.US_ASCII)
+            || charset.equals(StandardCharsets.ISO_8859_1);
+    }
+
+    //true when c is the lead or continuation byte of a multi byte utf-8 sequence
+    boolean isMultiByte(char c) {
+        return c >= 0x80 && charset.equals(StandardCharsets.UTF_8);
+    }
+
+    //what the bytes are in, the same bytes can mean a different script in another charset
+    Charset charset() {
+        return charset;
+    }
+
+    //the raw file bytes, as a separate view so reading it doesnt move anyone elses position
+    ByteBuffer bytes() {
+        return bytes.duplicate();
+    }
+
+    @Override
+    public int length() {
+        return bytes.limit();
+    }
+
+    @Override
+    public char charAt(int index) {
+        //mask off the sign so bytes above 0x7f dont turn into negative chars
+        return (char) (bytes.get(index) & 0xff);
+    }
+
+    //slices are decoded on demand so only lexemes ever become Strings
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return decode(start, end);
+    }
+
+    String decode(int start, int end) {
+        int length = end - start;
+
+        //ascii fast path, skip the decoder entirely
+        byte[] chunk = new byte[length];
+        bytes.get(start, chunk);
+        for (byte b : chunk) {
+            if (b < 0) return new String(chunk, charset);
+        }
+        return new String(chunk, StandardCharsets.ISO_8859_1);
+    }
+
+    @Override
+    public String toString() {
+        return decode(0, length());
+    }
+}
@@ -0,0 +1,144 @@
+package com.jlox;
+
+import java.math.BigInteger;
+
+//turns a NUMBER lexeme into its double straight off the source, no substring and no general purpose
+//parse, and always the same bits Double.parseDouble would give. lox numbers are digits with an
+//optional .digits, so there is no sign and no exponent and the value is w * 10^q with q <= 0.
+//  up to 2^53 with at most 22 fraction digits: w and 10^-q are both exact doubles, so one division
+//  is correctly rounded (clingers fast path)
+//  anything else up to 19 significant digits: eisel-lemire, w times a 128 bit power of five
+//  more digits than fit in a long: Double.parseDouble, which is rare enough not to matter
+class NumberDecoder {
+
+    private static final int MAX_DIGITS = 19; //significant digits that always fit in an unsigned long
+    private static final long MAX_EXACT = 1L << 53;
+
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+        1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    //lexeme is script[start, end), already checked against the grammar by the scanner
+    static double decode(CharSequence script, int start, int end) {
+        long w = 0;
+        int digits = 0; //significant ones, leading zeros dont count
+        int q = 0;
+        boolean fraction = false;
+
+        for (int i = start; i < end; i++) {
+            char c = script.charAt(i);
+            if (c == '.') {
+                fraction = true;
+                continue;
+            }
+
+            if (w != 0 || c != '0') {
+                if (++digits > MAX_DIGITS) {
+                    return Double.parseDouble(script.subSequence(start, end).toString());
+                }
+                w = w * 10 + (c - '0');
+            }
+            if (fraction) q--;
+        }
+
+        if (w == 0) return 0.0;
+
+        //w is unsigned, 19 digits can go past Long.MAX_VALUE
+        if (Long.compareUnsigned(w, MAX_EXACT) <= 0 && q >= -22) {
+            return (double) w / POWERS_OF_TEN[-q];
+        }
+
+        return eiselLemire(w, q);
+    }
+
+    //w * 10^q for w > 0 and q <= 0, see Lemire, "Number Parsing at a Gigabyte per Second" and
+    //Mushtak and Lemire, "Fast Number Parsing Without Fallback". the 128 bit product is always
+    //enough, so unlike the original there is no give up and fall back case
+    private static double eiselLemire(long w, int q) {
+        if (q < PowersOfFive.SMALLEST) return 0.0; //below 10^-342 even 19 nines round to zero
+
+        int lz = Long.numberOfLeadingZeros(w);
+        w <<= lz;
+
+        //product of w with the truncated 128 bit 5^q, only the high half and the carry into it matter
+        int index = 2 * (q - PowersOfFive.SMALLEST);
+        long high = multiplyHigh(w, PowersOfFive.TABLE[index]);
+        long low = w * PowersOfFive.TABLE[index];
+
+        //55 bits of precision, if the bits below them are all ones the low word of 5^q could carry in
+        long mask = 0xFFFFFFFFFFFFFFFFL >>> 55;
+        if ((high & mask) == mask) {
+            long next = multiplyHigh(w, PowersOfFive.TABLE[index + 1]);
+            low += next;
+            if (Long.compareUnsigned(next, low) > 0) high++;
+        }
+
+        int upper = (int) (high >>> 63);
+        int shift = upper + 64 - 52 - 3;
+        long mantissa = high >>> shift;
+        int power2 = ((217706 * q) >> 16) + 63 + upper - lz + 1023;
+
+        if (power2 <= 0) {
+            //subnormal
+            if (-power2 + 1 >= 64) return 0.0;
+            mantissa >>>= -power2 + 1;
+            mantissa += mantissa & 1;
+            mantissa >>>= 1;
+            power2 = mantissa < (1L << 52) ? 0 : 1;
+            return Double.longBitsToDouble(mantissa | ((long) power2 << 52));
+        }
+
+        //we round up, unless were exactly halfway and the even choice is down. exact halfway
+        //products only happen for small powers
+        if (Long.compareUnsigned(low, 1) <= 0 && q >= -4 && (mantissa & 3) == 1 && (mantissa << shift) == high) {
+            mantissa &= ~1L;
+        }
+
+        mantissa += mantissa & 1;
+        mantissa >>>= 1;
+        if (mantissa >= (2L << 52)) {
+            mantissa = 1L << 52;
+            power2++;
+        }
+        mantissa &= ~(1L << 52);
+
+        //q <= 0 and w < 10^19, so power2 never gets anywhere near infinity
+        return Double.longBitsToDouble(mantissa | ((long) power2 << 52));
+    }
+
+    //high 64 bits of the unsigned 128 bit product, Math.unsignedMultiplyHigh is java 18
+    private static long multiplyHigh(long a, long b) {
+        return Math.multiplyHigh(a, b) + ((a >> 63) & b) + ((b >> 63) & a);
+    }
+
+    //5^q for q in [-342, 0] as 128 bit values with the top bit set, two longs each, high word first.
+    //negative powers are 2^b / 5^-q rounded up. built from BigInteger the first time a long decimal
+    //shows up, most scripts never need it
+    private static class PowersOfFive {
+        static final int SMALLEST = -342;
+        static final long[] TABLE = new long[2 * (1 - SMALLEST)];
+
+        static {
+            BigInteger two128 = BigInteger.ONE.shiftLeft(128);
+            for (int q = SMALLEST; q <= 0; q++) {
+                BigInteger power = BigInteger.valueOf(5).pow(-q);
+                int z = power.bitLength(); //smallest z with 2^z >= 5^-q, 5^n is never a power of two
+
+                BigInteger value;
+                if (q == 0) {
+                    value = BigInteger.ONE.shiftLeft(127);
+                } else if (q >= -27) {
+                    value = BigInteger.ONE.shiftLeft(z + 127).divide(power).add(BigInteger.ONE);
+                } else {
+                    value = BigInteger.ONE.shiftLeft(2 * z + 128).divide(power).add(BigInteger.ONE);
+                    while (value.compareTo(two128) >= 0) value = value.shiftRight(1);
+                }
+
+                int index = 2 * (q - SMALLEST);
+                TABLE[index] = value.shiftRight(64).longValue();
+                TABLE[index + 1] = value.longValue();
+            }
+        }
+    }
+}
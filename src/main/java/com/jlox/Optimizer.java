@@ -0,0 +1,161 @@
+package com.jlox;
+
+import static com.jlox.TokenType.*;
+
+//shrinks an Expr tree before anything else looks at it. bottom up, it
+//  - folds any Binary/Unary whose operands are all literals into one literal
+//  - drops Grouping nodes, the tree shape already holds the precedence
+//  - rewrites x * 1, 1 * x, x / 1, x - 0 and - - x to x when x is known to be a number,
+//    and ! ! x to x when x is known to be a boolean
+//
+//everything here gives the same value or the same runtime error as the original tree. a literal subtree
+//that would fail at runtime (like "a" - 1) is left alone so the error still happens, with its own token.
+//x + 0 is left alone too, -0 + 0 is 0
+class Optimizer implements Expr.Visitor<Expr> {
+
+    //folds by actually running the node, so the rules can never drift from Interpreter
+    private final Interpreter interpreter = new Interpreter(new Diagnostics());
+    private int removed = 0;
+
+
+    Expr optimize(Expr expr) {
+        int before = count(expr);
+        Expr optimized = expr.accept(this);
+        removed += before - count(optimized);
+        return optimized;
+    }
+
+    //nodes taken out over every optimize call so far
+    int removed() {
+        return removed;
+    }
+
+    @Override
+    public Expr visitBinaryExpr(Expr.Binary expr) {
+        Expr left = expr.left.accept(this);
+        Expr right = expr.right.accept(this);
+
+        if (left instanceof Expr.Literal && right instanceof Expr.Literal) {
+            Expr folded = fold(new Expr.Binary(left, expr.operator, right));
+            if (folded != null) return folded;
+        }
+
+        switch (expr.operator.type) {
+            case STAR:
+                if (isNumber(left) && isLiteral(right, 1.0)) return left;
+                if (isLiteral(left, 1.0) && isNumber(right)) return right;
+                break;
+            case SLASH:
+                if (isNumber(left) && isLiteral(right, 1.0)) return left;
+                break;
+            case MINUS:
+                //x - 0 is x even for -0, unlike x + 0
+                if (isNumber(left) && isLiteral(right, 0.0)) return left;
+                break;
+            default:
+                break;
+        }
+
+        if (left == expr.left && right == expr.right) return expr;
+        return new Expr.Binary(left, expr.operator, right);
+    }
+
+    @Override
+    public Expr visitGroupingExpr(Expr.Grouping expr) {
+        return expr.expression.accept(this);
+    }
+
+    @Override
+    public Expr visitLiteralExpr(Expr.Literal expr) {
+        return expr;
+    }
+
+    @Override
+    public Expr visitUnaryExpr(Expr.Unary expr) {
+        Expr right = expr.right.accept(this);
+
+        if (right instanceof Expr.Literal) {
+            Expr folded = fold(new Expr.Unary(expr.operator, right));
+            if (folded != null) return folded;
+        }
+
+        //- - x and ! ! x, only when the inner operand cant change type on the way through
+        if (right instanceof Expr.Unary && ((Expr.Unary) right).operator.type == expr.operator.type) {
+            Expr inner = ((Expr.Unary) right).right;
+            if (expr.operator.type == MINUS && isNumber(inner)) return inner;
+            if (expr.operator.type == BANG && isBoolean(inner)) return inner;
+        }
+
+        if (right == expr.right) return expr;
+        return new Expr.Unary(expr.operator, right);
+    }
+
+    //null if running it would be a runtime error
+    private Expr fold(Expr expr) {
+        try {
+            return new Expr.Literal(interpreter.evaluate(expr));
+        } catch (RuntimeError error) {
+            return null;
+        }
+    }
+
+    private static boolean isLiteral(Expr expr, double value) {
+        if (!(expr instanceof Expr.Literal)) return false;
+        Object literal = ((Expr.Literal) expr).value;
+        //compare bits, so -0 doesnt pass for 0
+        return literal instanceof Double && Double.doubleToRawLongBits((Double) literal) == Double.doubleToRawLongBits(value);
+    }
+
+    //true when the expression can only ever come out as a number (or fail on its own)
+    static boolean isNumber(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Double;
+        if (expr instanceof Expr.Grouping) return isNumber(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) return ((Expr.Unary) expr).operator.type == MINUS;
+
+        if (expr instanceof Expr.Binary) {
+            Expr.Binary binary = (Expr.Binary) expr;
+            switch (binary.operator.type) {
+                case MINUS:
+                case STAR:
+                case SLASH:
+                    return true;
+                case PLUS:
+                    return isNumber(binary.left) && isNumber(binary.right);
+                default:
+                    return false;
+            }
+        }
+
+        return false;
+    }
+
+    //same again for booleans
+    static boolean isBoolean(Expr expr) {
+        if (expr instanceof Expr.Literal) return ((Expr.Literal) expr).value instanceof Boolean;
+        if (expr instanceof Expr.Grouping) return isBoolean(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) return ((Expr.Unary) expr).operator.type == BANG;
+
+        if (expr instanceof Expr.Binary) {
+            switch (((Expr.Binary) expr).operator.type) {
+                case EQUAL_EQUAL:
+                case BANG_EQUAL:
+                case GREATER:
+                case GREATER_EQUAL:
+                case LESS:
+                case LESS_EQUAL:
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        return false;
+    }
+
+    private static int count(Expr expr) {
+        if (expr instanceof Expr.Binary) return 1 + count(((Expr.Binary) expr).left) + count(((Expr.Binary) expr).right);
+        if (expr instanceof Expr.Grouping) return 1 + count(((Expr.Grouping) expr).expression);
+        if (expr instanceof Expr.Unary) return 1 + count(((Expr.Unary) expr).right);
+        return 1;
+    }
+}
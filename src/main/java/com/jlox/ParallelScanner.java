@@ -0,0 +1,177 @@
+package com.jlox;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+//lexes a big script on the fork join pool, chunks split at line starts are lexed speculatively
+//and then stitched together in order, fixing up any chunk that really started inside a string or comment
+class ParallelScanner {
+
+    //below this a single scanner wins, the chunking isnt free
+    static final int MIN_PARALLEL_SIZE = 1 << 20;
+    private static final int MIN_CHUNK_SIZE = 1 << 16;
+
+    private final CharSequence script;
+    private final Diagnostics diagnostics;
+
+    //null unless asked to intern, then the chunks intern into tables of their own while they run
+    //and stitching moves them all into this one
+    private final SymbolTable symbols;
+
+    //old style, errors go straight to the console through Lox
+    ParallelScanner(CharSequence script) {
+        this(script, Lox.console());
+    }
+
+    ParallelScanner(CharSequence script, Diagnostics diagnostics) {
+        this(script, diagnostics, null);
+    }
+
+    ParallelScanner(CharSequence script, Diagnostics diagnostics, SymbolTable symbols) {
+        this.script = script;
+        this.diagnostics = diagnostics;
+        this.symbols = symbols;
+    }
+
+    //what one chunk came out as when lexed on its own
+    private static class Chunk {
+        final Scanner scanner;
+        final List<Token> tokens;
+
+        Chunk(Scanner scanner, List<Token> tokens) {
+            this.scanner = scanner;
+            this.tokens = tokens;
+        }
+    }
+
+    //same tokens (and the same errors, in the same order) as a sequential scanTokens()
+    List<Token> scanTokens() {
+        int parallelism = Runtime.getRuntime().availableProcessors();
+        if (script.length() < MIN_PARALLEL_SIZE || parallelism == 1) {
+            return new Scanner(script, 0, 1, diagnostics, symbols).scanTokens();
+        }
+
+        return scanTokens(Math.max(MIN_CHUNK_SIZE, script.length() / (parallelism * 4)));
+    }
+
+    //chunk size is only picked by hand when checking the stitching
+    List<Token> scanTokens(int chunkSize) {
+        int[] bounds = chunkBounds(chunkSize);
+        int chunks = bounds.length - 1;
+
+        //line each chunk starts on, newline counting is embarrassingly parallel
+        int[] newlines = IntStream.range(0, chunks).parallel()
+            .map(i -> countNewlines(bounds[i], bounds[i + 1]))
+            .toArray();
+        int[] startLines = new int[chunks];
+        startLines[0] = 1;
+        for (int i = 1; i < chunks; i++) startLines[i] = startLines[i - 1] + newlines[i - 1];
+
+        //assume every chunk starts in the clean between-tokens state and lex them all at once
+        Chunk[] results = IntStream.range(0, chunks).parallel()
+            .mapToObj(i -> lex(bounds[i], startLines[i], bounds[i + 1]))
+            .toArray(Chunk[]::new);
+
+        return stitch(bounds, results);
+    }
+
+    //walks the chunks in order, a chunk is only right if the one before it stopped exactly on its start
+    private List<Token> stitch(int[] bounds, Chunk[] results) {
+        List<Token> tokens = new ArrayList<>();
+        Chunk previous = null;
+
+        for (int i = 0; i < results.length; i++) {
+            Chunk chunk = results[i];
+
+            if (previous != null && previous.scanner.position() > bounds[i]) {
+                //the last string or comment of the previous chunk ran into this one, so the
+                //speculative run started mid lexeme, lex again from where the previous one really stopped
+                int from = previous.scanner.position();
+                if (from >= bounds[i + 1]) {
+                    //swallowed whole, the previous chunk carries on as the one to check against
+                    continue;
+                }
+                chunk = lex(from, previous.scanner.currentLine(), bounds[i + 1]);
+            }
+
+            adopt(chunk, tokens);
+            diagnostics.addAll(chunk.scanner.diagnostics());
+            previous = chunk;
+        }
+
+        //the scanner that reached the end marks it, so EOF comes out exactly like a sequential scan
+        int count = previous.tokens.size();
+        previous.scanner.addEofToken();
+        tokens.add(previous.tokens.get(count));
+
+        return tokens;
+    }
+
+    //adds the chunks tokens with their symbols moved over to the shared table. the chunks are adopted
+    //in order and a chunks own ids go in order of first use, so ids come out just like a sequential scan
+    private void adopt(Chunk chunk, List<Token> tokens) {
+        if (symbols == null) {
+            tokens.addAll(chunk.tokens);
+            return;
+        }
+
+        SymbolTable local = chunk.scanner.symbols();
+        int[] ids = new int[local.size()];
+        for (int id = 0; id < ids.length; id++) ids[id] = symbols.intern(local, id);
+
+        for (Token token : chunk.tokens) {
+            if (token.symbol == SymbolTable.NONE) {
+                tokens.add(token);
+                continue;
+            }
+
+            int id = ids[token.symbol];
+            String name = symbols.name(id);
+            String lexeme = token.type == TokenType.STRING ? symbols.quoted(id) : name;
+
+            //a name first seen in this chunk was taken over with its Strings, so the token still fits
+            if (id == token.symbol && name == token.literal && lexeme == token.lexum) {
+                tokens.add(token);
+            } else {
+                tokens.add(new Token(token.type, lexeme, name, token.line, id));
+            }
+        }
+    }
+
+    SymbolTable symbols() {
+        return symbols;
+    }
+
+    private Chunk lex(int from, int line, int limit) {
+        //each chunk gets its own sink, so a speculative run that gets thrown away takes its errors with it
+        Scanner scanner = new Scanner(script, from, line, new Diagnostics(), symbols != null ? new SymbolTable() : null);
+        return new Chunk(scanner, scanner.scanUntil(limit));
+    }
+
+    //splits at roughly size chars, nudged forward so every chunk starts at the beginning of a line
+    private int[] chunkBounds(int size) {
+        List<Integer> bounds = new ArrayList<>();
+        bounds.add(0);
+
+        int next = size;
+        while (next < script.length()) {
+            while (next < script.length() && script.charAt(next - 1) != '\n') next++;
+            if (next >= script.length()) break;
+
+            bounds.add(next);
+            next += size;
+        }
+
+        bounds.add(script.length());
+        return bounds.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    private int countNewlines(int from, int to) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            if (script.charAt(i) == '\n') count++;
+        }
+        return count;
+    }
+}
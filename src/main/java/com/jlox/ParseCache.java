@@ -0,0 +1,469 @@
+package com.jlox;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.zip.CRC32;
+
+//parsed trees on disk, like .pyc files. one file per source, named by the sha-256 of the source bytes
+//(plus their charset and the versions below), so an unchanged script skips the Scanner and Parser entirely.
+//
+//file layout, big endian:
+//  "LOXC"  int version  long source length  int payload length  payload  int crc32 of the payload
+//payload is the tree in post order, children before their parent, one node at a time:
+//  byte kind, then for Binary/Unary the operator's TokenType ordinal (byte) and line (varint),
+//  for Literal a tag byte (nil, true, false, number, string) and the value
+//
+//anything that doesnt check out (wrong magic, version, length or crc) is just a miss. writes go to a temp
+//file and get renamed into place, so readers never see half a file and concurrent writers of the same
+//key just replace each others identical copy. the directory is kept under maxBytes by deleting the
+//least recently used files, hits bump a files modified time. temp files a crashed writer never renamed
+//get deleted once theyre STALE_TEMP_MILLIS old
+class ParseCache {
+
+    static final int VERSION = 1;
+    //bump whenever the Parser would build a different tree out of the same source, old files then
+    //just stop being found
+    static final int PARSER_VERSION = 1;
+    static final long DEFAULT_MAX_BYTES = 64L << 20;
+
+    //a temp file this old is from a writer that died before its rename, a live write takes milliseconds
+    static final long STALE_TEMP_MILLIS = 10 * 60 * 1000;
+
+    private static final int MAGIC = 0x4C4F5843; //LOXC
+    private static final String SUFFIX = ".loxc";
+    private static final String TEMP_SUFFIX = ".tmp";
+
+    private static final int BINARY = 0;
+    private static final int GROUPING = 1;
+    private static final int LITERAL = 2;
+    private static final int UNARY = 3;
+
+    private static final int NIL = 0;
+    private static final int TRUE = 1;
+    private static final int FALSE = 2;
+    private static final int NUMBER = 3;
+    private static final int STRING = 4;
+
+    private static final TokenType[] TOKEN_TYPES = TokenType.values();
+
+    private final Path directory;
+    private final long maxBytes;
+
+
+    ParseCache(Path directory, long maxBytes) {
+        this.directory = directory;
+        this.maxBytes = maxBytes;
+    }
+
+    //-Djlox.cache.dir picks the directory, ~/.cache/jlox otherwise
+    static ParseCache defaultCache() {
+        String configured = System.getProperty("jlox.cache.dir");
+        Path directory = configured != null
+            ? Paths.get(configured)
+            : Paths.get(System.getProperty("user.home"), ".cache", "jlox");
+        return new ParseCache(directory, DEFAULT_MAX_BYTES);
+    }
+
+    //the cached tree when theres one, otherwise a normal parse that gets stored if it had no errors
+    Expr parse(CharSequence script, Diagnostics diagnostics) {
+        String key = key(script);
+
+        Expr expression = load(key, script.length());
+        if (expression != null) return expression;
+
+        expression = Lox.parse(script, diagnostics);
+        if (!diagnostics.hadError()) store(key, script.length(), expression);
+        return expression;
+    }
+
+    //hex sha-256 of the source bytes, a mapped file is hashed straight off the mapping. the charset
+    //goes in too since the same bytes in latin-1 and utf-8 are different strings, and so do the
+    //versions so a newer jlox never picks up a tree an older one laid out or parsed differently
+    static String key(CharSequence script) {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is required on every jvm", e);
+        }
+
+        Charset charset = script instanceof MappedSource ? ((MappedSource) script).charset() : StandardCharsets.UTF_8;
+        String header = "jlox " + VERSION + " " + PARSER_VERSION + " " + charset.name() + "\n";
+        digest.update(header.getBytes(StandardCharsets.US_ASCII));
+
+        if (script instanceof MappedSource) {
+            digest.update(((MappedSource) script).bytes());
+        } else {
+            digest.update(script.toString().getBytes(StandardCharsets.UTF_8));
+        }
+
+        StringBuilder hex = new StringBuilder(64);
+        for (byte b : digest.digest()) {
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return hex.toString();
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+
+    //reading
+
+    //null on a miss, a file that fails any check is deleted so it gets rewritten
+    Expr load(String key, long sourceLength) {
+        Path file = file(key);
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION || in.readLong() != sourceLength) {
+                return corrupt(file);
+            }
+
+            int length = in.readInt();
+            if (length < 0 || length > Files.size(file)) return corrupt(file);
+
+            byte[] payload = new byte[length];
+            in.readFully(payload);
+
+            CRC32 crc = new CRC32();
+            crc.update(payload);
+            if (in.readInt() != (int) crc.getValue()) return corrupt(file);
+
+            Expr expression = decode(payload, Lox.factory());
+            if (expression == null) return corrupt(file);
+
+            touch(file);
+            return expression;
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (IOException | RuntimeException e) {
+            //truncated, or something decode didnt expect, either way its not a tree we can trust
+            return corrupt(file);
+        }
+    }
+
+    private Expr corrupt(Path file) {
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException ignored) {
+            //someone else will get it
+        }
+        return null;
+    }
+
+    //lru order is by modified time, so a hit moves the file to the back of the line
+    private void touch(Path file) {
+        try {
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException ignored) {
+            //only costs us eviction order
+        }
+    }
+
+    //rebuilds the tree with an explicit stack, post order means every node finds its children on top.
+    //the nodes come from factory like a parse would make them, so --share works on a hit too
+    private static Expr decode(byte[] payload, ExprFactory factory) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        Deque<Expr> stack = new ArrayDeque<>();
+
+        while (in.available() > 0) {
+            int kind = in.readUnsignedByte();
+            switch (kind) {
+                case BINARY: {
+                    Token operator = readOperator(in);
+                    Expr right = stack.pop();
+                    Expr left = stack.pop();
+                    stack.push(factory.binary(left, operator, right));
+                    break;
+                }
+                case GROUPING:
+                    stack.push(factory.grouping(stack.pop()));
+                    break;
+                case LITERAL:
+                    stack.push(factory.literal(readLiteral(in)));
+                    break;
+                case UNARY: {
+                    Token operator = readOperator(in);
+                    stack.push(factory.unary(operator, stack.pop()));
+                    break;
+                }
+                default:
+                    return null;
+            }
+        }
+
+        return stack.size() == 1 ? stack.pop() : null;
+    }
+
+    private static Token readOperator(DataInputStream in) throws IOException {
+        TokenType type = TOKEN_TYPES[in.readUnsignedByte()];
+        return new Token(type, Scanner.fixedLexeme(type), null, readVarint(in));
+    }
+
+    private static Object readLiteral(DataInputStream in) throws IOException {
+        switch (in.readUnsignedByte()) {
+            case NIL: return null;
+            case TRUE: return true;
+            case FALSE: return false;
+            case NUMBER: return in.readDouble();
+            case STRING: {
+                byte[] utf8 = new byte[readVarint(in)];
+                in.readFully(utf8);
+                return new String(utf8, StandardCharsets.UTF_8);
+            }
+            default:
+                throw new IOException("Bad literal tag");
+        }
+    }
+
+    private static int readVarint(InputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.read();
+            if (b < 0) throw new IOException("Truncated varint");
+            value |= (b & 0x7f) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Bad varint");
+    }
+
+
+    //writing
+
+    //best effort, a cache that cant be written just means the next run parses again
+    void store(String key, long sourceLength, Expr expression) {
+        try {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            DataOutputStream payload = new DataOutputStream(buffer);
+            new Encoder(payload).encode(expression);
+            payload.flush();
+            byte[] bytes = buffer.toByteArray();
+
+            CRC32 crc = new CRC32();
+            crc.update(bytes);
+
+            Files.createDirectories(directory);
+            Path temp = Files.createTempFile(directory, key, TEMP_SUFFIX);
+            try {
+                try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp), 1 << 16))) {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeLong(sourceLength);
+                    out.writeInt(bytes.length);
+                    out.write(bytes);
+                    out.writeInt((int) crc.getValue());
+                }
+
+                try {
+                    Files.move(temp, file(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+                } catch (AtomicMoveNotSupportedException e) {
+                    Files.move(temp, file(key), StandardCopyOption.REPLACE_EXISTING);
+                }
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+
+            evict();
+        } catch (IOException | RuntimeException e) {
+            //read only disk, no space, a tree we cant encode, whatever, skip it
+        }
+    }
+
+    //deletes the least recently used files until the directory fits in maxBytes, and any temp file
+    //a crashed writer left behind
+    void evict() throws IOException {
+        long stale = System.currentTimeMillis() - STALE_TEMP_MILLIS;
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + TEMP_SUFFIX)) {
+            for (Path entry : entries) {
+                try {
+                    if (Files.getLastModifiedTime(entry).toMillis() < stale) Files.deleteIfExists(entry);
+                } catch (NoSuchFileException e) {
+                    //its writer renamed it after all
+                }
+            }
+        }
+
+        List<Path> files = new ArrayList<>();
+        List<Long> times = new ArrayList<>();
+        long total = 0;
+
+        try (DirectoryStream<Path> entries = Files.newDirectoryStream(directory, "*" + SUFFIX)) {
+            for (Path entry : entries) {
+                try {
+                    total += Files.size(entry);
+                    times.add(Files.getLastModifiedTime(entry).toMillis());
+                    files.add(entry);
+                } catch (NoSuchFileException e) {
+                    //another process evicted it first
+                }
+            }
+        }
+
+        if (total <= maxBytes) return;
+
+        Integer[] order = new Integer[files.size()];
+        for (int i = 0; i < order.length; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(times.get(a), times.get(b)));
+
+        for (int i = 0; i < order.length && total > maxBytes; i++) {
+            Path file = files.get(order[i]);
+            try {
+                long size = Files.size(file);
+                Files.deleteIfExists(file);
+                total -= size;
+            } catch (NoSuchFileException e) {
+                //already gone
+            }
+        }
+    }
+
+    //walks the tree with an explicit stack like ExprShape does, a tree deep enough to blow the java
+    //stack still gets stored. a node is pushed once to have its children pushed above it, and comes
+    //back up to be written once they have been, which gives post order
+    private static class Encoder implements Expr.Visitor<Void> {
+        private final DataOutputStream out;
+
+        private Expr[] stack = new Expr[64];
+        private boolean[] expanded = new boolean[64];
+        private int size = 0;
+        private boolean writing = false; //for the node being visited, false while its children get pushed
+
+        Encoder(DataOutputStream out) {
+            this.out = out;
+        }
+
+        void encode(Expr expr) {
+            push(expr, false);
+            while (size > 0) {
+                Expr next = stack[--size];
+                stack[size] = null;
+                writing = expanded[size];
+                next.accept(this);
+            }
+        }
+
+        private void push(Expr expr, boolean children) {
+            if (size == stack.length) {
+                stack = Arrays.copyOf(stack, size * 2);
+                expanded = Arrays.copyOf(expanded, size * 2);
+            }
+            stack[size] = expr;
+            expanded[size++] = children;
+        }
+
+        @Override
+        public Void visitBinaryExpr(Expr.Binary expr) {
+            if (!writing) {
+                //popped in reverse, so left gets written first
+                push(expr, true);
+                push(expr.right, false);
+                push(expr.left, false);
+                return null;
+            }
+            write(BINARY);
+            operator(expr.operator);
+            return null;
+        }
+
+        @Override
+        public Void visitGroupingExpr(Expr.Grouping expr) {
+            if (!writing) {
+                push(expr, true);
+                push(expr.expression, false);
+                return null;
+            }
+            write(GROUPING);
+            return null;
+        }
+
+        @Override
+        public Void visitLiteralExpr(Expr.Literal expr) {
+            write(LITERAL);
+            Object value = expr.value;
+
+            try {
+                if (value == null) {
+                    out.writeByte(NIL);
+                } else if (value instanceof Boolean) {
+                    out.writeByte((Boolean) value ? TRUE : FALSE);
+                } else if (value instanceof Double) {
+                    out.writeByte(NUMBER);
+                    out.writeDouble((Double) value);
+                } else if (value instanceof String) {
+                    byte[] utf8 = ((String) value).getBytes(StandardCharsets.UTF_8);
+                    out.writeByte(STRING);
+                    writeVarint(out, utf8.length);
+                    out.write(utf8);
+                } else {
+                    //the parser never makes any other kind of literal
+                    throw new IllegalArgumentException("Can't cache a " + value.getClass().getSimpleName() + " literal");
+                }
+            } catch (IOException e) {
+                throw new IllegalStateException(e); //cant happen, its a byte array
+            }
+            return null;
+        }
+
+        @Override
+        public Void visitUnaryExpr(Expr.Unary expr) {
+            if (!writing) {
+                push(expr, true);
+                push(expr.right, false);
+                return null;
+            }
+            write(UNARY);
+            operator(expr.operator);
+            return null;
+        }
+
+        private void write(int kind) {
+            try {
+                out.writeByte(kind);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private void operator(Token operator) {
+            try {
+                out.writeByte(operator.type.ordinal());
+                writeVarint(out, operator.line);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static void writeVarint(OutputStream out, int value) throws IOException {
+        while ((value & ~0x7f) != 0) {
+            out.write((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        out.write(value);
+    }
+}
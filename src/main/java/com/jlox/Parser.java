@@ -1,5 +1,10 @@
 package com.jlox;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.IntUnaryOperator;
 
 import static com.jlox.TokenType.*;
 
@@ -10,68 +15,186 @@ public class Parser {
     private static class ParseError extends RuntimeException{}
 
 
-    //list of tokens to be parsed
+    //tokens to be parsed, either as a list of Token objects, a compact TokenBuffer,
+    //or pulled from a scanner as we go
     private final List<Token> tokens;
+    private final TokenBuffer buffer;
+    private final Scanner scanner;
     private int current = 0;
 
+    //streaming mode only keeps the last few tokens, slot for index i is i & RING_MASK
+    private static final int RING_SIZE = 4;
+    private static final int RING_MASK = RING_SIZE - 1;
+    private Token[] ring = null;
+    private int pulled = 0; //tokens pulled from the scanner so far
+
+    //incremental reparsing (see EditSession), groupings from the last parse keyed by their ( token
+    //so ones the edit didnt touch can be dropped straight back into the new tree
+    static class Span {
+        final Token open;
+        final Token close;
+        final int width; //tokens from ( to ) inclusive
+        final Expr.Grouping grouping;
+        final List<Span> nested;
+
+        Span(Token open, Token close, int width, Expr.Grouping grouping, List<Span> nested) {
+            this.open = open;
+            this.close = close;
+            this.width = width;
+            this.grouping = grouping;
+            this.nested = nested;
+        }
+    }
+
+    private Map<Token, Span> reuse = null;
+    private Map<Token, Span> groupings = null;
+    private List<Span> siblings = null; //spans inside the grouping currently being parsed
+    private int damageFrom = 0;
+    private int damageTo = 0;
+    private IntUnaryOperator lines = null; //line of the token at an index, reused tokens keep the line they were lexed on
+
+    //where syntax errors go
+    private final Diagnostics diagnostics;
 
+    //makes the nodes, see using()
+    private ExprFactory factory = ExprFactory.plain();
+
+
+    //old style, errors go straight to the console through Lox
     Parser(List<Token> tokens) {
+        this(tokens, Lox.console());
+    }
+
+    Parser(List<Token> tokens, Diagnostics diagnostics) {
         this.tokens = tokens;
+        this.buffer = null;
+        this.scanner = null;
+        this.diagnostics = diagnostics;
     }
 
-    //helper functions
-    private boolean match(TokenType...args) {
+    //reparse after an edit, tokens in [damageFrom, damageTo) are new and anything else is from the last parse
+    Parser(List<Token> tokens, Diagnostics diagnostics, Map<Token, Span> reuse, int damageFrom, int damageTo, IntUnaryOperator lines) {
+        this(tokens, diagnostics);
+        this.lines = lines;
+        this.reuse = reuse;
+        this.groupings = new IdentityHashMap<>();
+        this.siblings = new ArrayList<>();
+        this.damageFrom = damageFrom;
+        this.damageTo = damageTo;
+    }
 
-        for (TokenType arg : args) {
-            if (check(arg)) {
-                advance();
-                return true;
-            }
+    //groupings built or reused by this parse, hand these to the next one
+    Map<Token, Span> groupings() {
+        return groupings;
+    }
+
+    //parses straight off the buffer, Token objects only get made for operators and errors
+    Parser(TokenBuffer buffer) {
+        this(buffer, Lox.console());
+    }
 
+    Parser(TokenBuffer buffer, Diagnostics diagnostics) {
+        this.tokens = null;
+        this.buffer = buffer;
+        this.scanner = null;
+        this.diagnostics = diagnostics;
+    }
+
+    //scans and parses in lockstep, memory for tokens stays at RING_SIZE no matter how big the script is,
+    //syntax errors go to the same place as the scanners errors
+    Parser(Scanner scanner) {
+        this.tokens = null;
+        this.buffer = null;
+        this.scanner = scanner;
+        this.ring = new Token[RING_SIZE];
+        this.diagnostics = scanner.diagnostics();
+    }
+
+    //builds nodes through factory, a hash consing one makes repeated subtrees into one shared node.
+    //not for edit sessions, a reparse needs every grouping to be its own node
+    Parser using(ExprFactory factory) {
+        this.factory = factory;
+        return this;
+    }
+
+    //token access, these are the only places that care which representation we have
+    private TokenType typeAt(int index) {
+        if (buffer != null) return buffer.type(index);
+        if (scanner != null) return pull(index).type;
+        return tokens.get(index).type;
+    }
+
+    private Object literalAt(int index) {
+        if (buffer != null) return buffer.literal(index);
+        if (scanner != null) return pull(index).literal;
+        return tokens.get(index).literal;
+    }
+
+    private Token tokenAt(int index) {
+        if (buffer != null) return buffer.token(index);
+        if (scanner != null) return pull(index);
+        return tokens.get(index);
+    }
+
+    //pulls from the scanner until index is in the ring, the parser never looks back further than previous()
+    private Token pull(int index) {
+        while (pulled <= index) {
+            ring[pulled & RING_MASK] = scanner.nextToken();
+            pulled++;
         }
-        return false;
-    }   
 
+        return ring[index & RING_MASK];
+    }
+
+    //helper functions
     private boolean check(TokenType type) {
         if (isAtEnd()) return false;
-        return peek().type == type;
+        return typeAt(current) == type;
     }
 
-    private Token advance() {
+    //doesnt hand back the token, use previous() if its actually needed
+    private void advance() {
         if (!isAtEnd()) current++;
-        return previous();
     }
 
     private Token previous() {
-        return tokens.get(current - 1);
+        return tokenAt(current - 1);
     }
 
     private boolean isAtEnd() {
-        return peek().type == EOF;
+        return typeAt(current) == EOF;
     }
 
     private Token peek() {
-        return tokens.get(current);
+        return tokenAt(current);
     }
 
-    private Token consume(TokenType expectedType, String msg) {
-        if (check(expectedType)) return advance();
+    private void consume(TokenType expectedType, String msg) {
+        if (check(expectedType)) {
+            advance();
+            return;
+        }
         throw error(peek(), msg);
     }
 
     private ParseError error(Token token, String msg) {
-        Lox.error(token, msg);
+        diagnostics.error(token, lineOf(token), msg);
         return new ParseError();
     }
 
+    //errors are always at peek(), in a reparse that token can be one an earlier edit moved down
+    private int lineOf(Token token) {
+        return lines != null && token == peek() ? lines.applyAsInt(current) : token.line;
+    }
+
     private void synchronize() {
         advance();
 
         //discard until we reach a semi colon followed by a starter keyword
         while (!isAtEnd()) {
 
-            if (previous().type == SEMICOLON) return;
-            switch (peek().type) {
+            if (typeAt(current - 1) == SEMICOLON) return;
+            switch (typeAt(current)) {
                 case CLASS:
                 case FUN:
                 case VAR:
@@ -90,110 +213,228 @@ public class Parser {
     }
 
 
-    //highest precedence, handles literals 
-    private Expr primary() {
-       if (match(TRUE)) return new Expr.Literal(true);
-       if (match(FALSE)) return new Expr.Literal(false);
-       if (match(NIL)) return new Expr.Literal(null);
-
-       if (match(STRING, NUMBER)) {
-            return new Expr.Literal(previous().literal);
-       }
-
-       if (match(LEFT_PAREN)) {
-            Expr expr = expression();
-            consume(RIGHT_PAREN, "Right ) expected");
-            return new Expr.Grouping(expr);
-       }
-
-       throw error(peek(), "Expression Expected");
+    //binding power of each binary operator by TokenType ordinal, 0 for tokens that arent one.
+    //higher binds tighter, every level is left associative
+    private static final byte[] PRECEDENCE = new byte[TokenType.values().length];
+    private static final byte EQUALITY = 1;   // == !=
+    private static final byte COMPARISON = 2; // > >= < <=
+    private static final byte TERM = 3;       // + -
+    private static final byte FACTOR = 4;     // * /
+
+    static {
+        PRECEDENCE[EQUAL_EQUAL.ordinal()] = EQUALITY;
+        PRECEDENCE[BANG_EQUAL.ordinal()] = EQUALITY;
+        PRECEDENCE[GREATER.ordinal()] = COMPARISON;
+        PRECEDENCE[GREATER_EQUAL.ordinal()] = COMPARISON;
+        PRECEDENCE[LESS.ordinal()] = COMPARISON;
+        PRECEDENCE[LESS_EQUAL.ordinal()] = COMPARISON;
+        PRECEDENCE[PLUS.ordinal()] = TERM;
+        PRECEDENCE[MINUS.ordinal()] = TERM;
+        PRECEDENCE[SLASH.ordinal()] = FACTOR;
+        PRECEDENCE[STAR.ordinal()] = FACTOR;
     }
 
-    //unary  → ( "!" | "-" ) unary | primary ;
-    private Expr unary() {
-        
-        if (match(BANG, MINUS)) {
-           Token operator = previous();
-            Expr right = unary();
-            return new Expr.Unary(operator, right);
-        }
+    //token sets as bitmasks over the ordinals, there are less than 64 TokenTypes
+    private static final long PREFIX_OPERATORS = setOf(BANG, MINUS);
+    private static final long LITERALS = setOf(TRUE, FALSE, NIL, STRING, NUMBER);
 
-        return primary();
+    private static long setOf(TokenType... types) {
+        long set = 0;
+        for (TokenType type : types) set |= 1L << type.ordinal();
+        return set;
     }
 
-    private Expr factor() {
-        Expr expr = unary();
-
-        while (match(SLASH, STAR)) {
-            Token operator = previous();
-            Expr right = unary();
-            expr = new Expr.Binary(expr, operator, right);
-        }
-
-        return expr;
+    private static boolean in(long set, TokenType type) {
+        return (set & (1L << type.ordinal())) != 0;
     }
 
-    private Expr term() {
-        Expr expr = factor();
+    //what sits on the operator stack besides binary operators, which are their PRECEDENCE.
+    //an open ( is lower than every operator so reducing stops there
+    private static final byte PAREN = 0;
+    private static final byte PREFIX = -1;
+
+    //most open ( and prefixes at once. parsing would cope with any number, but the Interpreter, Optimizer,
+    //Compiler and the rest walk the tree recursively, and they all still had stack to spare at 2000 on
+    //a default 1mb thread stack
+    static final int MAX_NESTING = 1000;
+
+    //expression → unary ( binary_op unary )* , unary → ( "!" | "-" ) unary | primary ,
+    //primary → literal | "(" expression ")"
+    //
+    //precedence climbing driven by the table above. instead of recursing, operators waiting for their
+    //right operand and the operands waiting for an operator go on two explicit stacks, so a number costs
+    //one pass round the loop instead of six nested calls and nesting depth only costs heap, never java stack.
+    //everything downstream does recurse though, so nesting stops at MAX_NESTING
+    private Expr expression() {
+        Token[] operators = new Token[16];
+        byte[] kinds = new byte[16];
+        int[] opens = groupings != null ? new int[16] : null; //where each ( was, for trackedGrouping
+        List<List<Span>> outers = groupings != null ? new ArrayList<>() : null;
+        int pending = 0;
+        int nesting = 0; //PAREN and PREFIX entries in kinds
+
+        Expr[] operands = new Expr[16];
+        int waiting = 0;
+
+        while (true) {
+            //operand position, prefixes and ( pile up until something that starts an operand turns up
+            TokenType type = typeAt(current);
+            Expr operand;
+
+            if (in(PREFIX_OPERATORS, type) || type == LEFT_PAREN) {
+                if (nesting == MAX_NESTING) throw error(peek(), "Expression nested too deeply");
+                if (pending == operators.length) {
+                    operators = Arrays.copyOf(operators, pending * 2);
+                    kinds = Arrays.copyOf(kinds, pending * 2);
+                    if (opens != null) opens = Arrays.copyOf(opens, pending * 2);
+                }
+
+                operators[pending] = tokenAt(current);
+                advance();
 
-        while (match(PLUS, MINUS)) {
-            Token operator = previous();
-            Expr right = factor();
-            expr = new Expr.Binary(expr, operator, right);
-        }
+                if (type != LEFT_PAREN) {
+                    kinds[pending++] = PREFIX;
+                    nesting++;
+                    continue;
+                }
+
+                if (groupings == null) {
+                    kinds[pending++] = PAREN;
+                    nesting++;
+                    continue;
+                }
+
+                Expr reused = reusedGrouping(current - 1);
+                if (reused == null) {
+                    opens[pending] = current - 1;
+                    kinds[pending++] = PAREN;
+                    nesting++;
+                    outers.add(siblings);
+                    siblings = new ArrayList<>();
+                    continue;
+                }
+                operand = reused;
+            } else if (in(LITERALS, type)) {
+                operand = literal(type);
+                advance();
+            } else {
+                throw error(peek(), "Expression Expected");
+            }
 
-        return expr;
+            //operator position, loops while ) keep closing groupings
+            while (true) {
+                //prefixes bind tighter than any binary operator, so they take the operand straight away
+                while (pending > 0 && kinds[pending - 1] == PREFIX) {
+                    operand = factory.unary(operators[--pending], operand);
+                    nesting--;
+                }
+
+                byte precedence = PRECEDENCE[typeAt(current).ordinal()];
+                if (precedence != 0) {
+                    //everything waiting that binds at least as tight gets its right operand now
+                    while (pending > 0 && kinds[pending - 1] >= precedence) {
+                        operand = factory.binary(operands[--waiting], operators[--pending], operand);
+                    }
+
+                    if (waiting == operands.length) operands = Arrays.copyOf(operands, waiting * 2);
+                    operands[waiting++] = operand;
+
+                    if (pending == operators.length) {
+                        operators = Arrays.copyOf(operators, pending * 2);
+                        kinds = Arrays.copyOf(kinds, pending * 2);
+                        if (opens != null) opens = Arrays.copyOf(opens, pending * 2);
+                    }
+                    operators[pending] = tokenAt(current);
+                    kinds[pending++] = precedence;
+                    advance();
+                    break;
+                }
+
+                //no operator follows, so everything back to the innermost ( is complete
+                while (pending > 0 && kinds[pending - 1] != PAREN) {
+                    operand = factory.binary(operands[--waiting], operators[--pending], operand);
+                }
+
+                if (pending == 0) return operand;
+
+                consume(RIGHT_PAREN, "Right ) expected");
+                pending--;
+                nesting--;
+                if (groupings == null) {
+                    operand = factory.grouping(operand);
+                } else {
+                    operand = trackedGrouping(opens[pending], operand, outers.remove(outers.size() - 1));
+                }
+            }
+        }
     }
 
-    //comparison     → term ( ( ">" | ">=" | "<" | "<=" ) term )* ;
-    private Expr comparison() {
-        Expr expr = term();
-
-        while (match(GREATER, GREATER_EQUAL, LESS, LESS_EQUAL)) {
-
-            Token operator = previous();
-            Expr right = term();
-            expr = new Expr.Binary(expr, operator, right);
+    private Expr literal(TokenType type) {
+        switch (type) {
+            case TRUE: return factory.literal(true);
+            case FALSE: return factory.literal(false);
+            case NIL: return factory.literal(null);
+            default: return factory.literal(literalAt(current));
         }
-
-        return expr;
     }
 
+    //incremental reparse, the grouping whose ( is at open if the last parse had one there
+    //the edit didnt touch. skips straight past its )
+    private Expr reusedGrouping(int open) {
+        Span old = reuse.get(tokens.get(open));
+        if (old == null) return null;
 
-    //equality       → comparison ( ( "!=" | "==" ) comparison )* ;
-    private Expr equality() {
-
-       Expr expr = comparison();
-       
+        int close = open + old.width - 1;
+        boolean damaged = open < damageTo && close >= damageFrom;
 
-       while(match(EQUAL_EQUAL, BANG_EQUAL)) {
-
-            Token operator = previous();
-            Expr right = comparison();
-            expr = new Expr.Binary(expr, operator, right);
-       }
-
-       return expr;
+        //the ) has to still be the same token the same distance away
+        if (damaged || close >= tokens.size() || tokens.get(close) != old.close) return null;
 
+        current = close + 1;
+        keep(old);
+        siblings.add(old);
+        return old.grouping;
     }
 
-    //comma -> 
-    private Expr comma() {
-
+    //a freshly parsed grouping, recorded for the next reparse. siblings holds the ones nested in it
+    private Expr trackedGrouping(int open, Expr expr, List<Span> outer) {
+        Span span = new Span(tokens.get(open), previous(), current - open, new Expr.Grouping(expr), siblings);
+        groupings.put(span.open, span);
+        siblings = outer;
+        siblings.add(span);
+        return span.grouping;
     }
 
-    //Expression simply evaluates to equality
-    private Expr expression() {
-       return equality();
+    //a reused grouping brings the ones nested in it along too
+    private void keep(Span span) {
+        groupings.put(span.open, span);
+        for (Span inner : span.nested) keep(inner);
     }
 
 
     //starts off this whole process
     public Expr parse() {
+        PhaseEvents.Parse event = new PhaseEvents.Parse();
+        event.begin();
+        int errors = diagnostics.errorCount();
+
+        Expr expression;
         try {
-            return expression();
+            expression = expression();
         } catch (ParseError error) {
-            return null;
+            expression = null;
+        }
+
+        event.end();
+        if (event.shouldCommit()) {
+            ExprShape shape = ExprShape.of(expression);
+            event.streaming = scanner != null;
+            event.tokens = current;
+            event.nodes = shape.nodes;
+            event.maxDepth = shape.maxDepth;
+            event.errors = diagnostics.errorCount() - errors;
+            event.commit();
         }
+        return expression;
     }
 }
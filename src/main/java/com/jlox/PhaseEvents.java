@@ -0,0 +1,71 @@
+package com.jlox;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+//flight recorder events for the front end, one per scan, parse and print. while no recording has
+//them switched on begin/commit are next to free and the tree is never walked for the counts
+//
+//  java -XX:StartFlightRecording:filename=lox.jfr -cp target/classes com.jlox.Lox script.lox
+//  jfr print --categories jlox lox.jfr
+class PhaseEvents {
+
+    @Name("jlox.Scan")
+    @Label("Scan")
+    @Category("jlox")
+    @Description("Scanner.scanTokens over a whole script")
+    static class Scan extends Event {
+        @Label("Source Length")
+        @Description("Chars of source, one per byte for memory mapped files")
+        long sourceLength;
+
+        @Label("Tokens")
+        long tokens;
+
+        @Label("Errors")
+        int errors;
+    }
+
+    @Name("jlox.Parse")
+    @Label("Parse")
+    @Category("jlox")
+    @Description("Parser.parse, includes scanning when it pulls tokens straight from a Scanner")
+    static class Parse extends Event {
+        @Label("Includes Scanning")
+        boolean streaming;
+
+        @Label("Tokens")
+        @Description("Tokens the parser got through before stopping")
+        long tokens;
+
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Max Depth")
+        int maxDepth;
+
+        @Label("Errors")
+        int errors;
+    }
+
+    @Name("jlox.Print")
+    @Label("Print")
+    @Category("jlox")
+    @Description("ASTprinter writing one tree")
+    static class Print extends Event {
+        @Label("Nodes")
+        long nodes;
+
+        @Label("Max Depth")
+        int maxDepth;
+
+        @Label("Output")
+        @DataAmount(DataAmount.BYTES)
+        @Description("Chars written")
+        long chars;
+    }
+}
@@ -0,0 +1,11 @@
+package com.jlox;
+
+//errors that only show up while evaluating, like adding a string to a number
+class RuntimeError extends RuntimeException {
+    final Token token; //operator that failed, for the line number
+
+    RuntimeError(Token token, String message) {
+        super(message);
+        this.token = token;
+    }
+}
@@ -1,48 +1,124 @@
 package com.jlox;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
 
 import static com.jlox.TokenType.*;
 
 
 public class Scanner {
 
-    private static final Map<String, TokenType> keywords;
+    //one shared lexeme string per keyword, indexed by TokenType ordinal, so keyword tokens never copy
+    private static final String[] keywordLexemes = new String[TokenType.values().length];
 
     static {
-        keywords = new HashMap<>();
-        keywords.put("and",    AND);
-        keywords.put("class",  CLASS);
-        keywords.put("else",   ELSE);
-        keywords.put("false",  FALSE);
-        keywords.put("for",    FOR);
-        keywords.put("fun",    FUN);
-        keywords.put("if",     IF);
-        keywords.put("nil",    NIL);
-        keywords.put("or",     OR);
-        keywords.put("print",  PRINT);
-        keywords.put("return", RETURN);
-        keywords.put("super",  SUPER);
-        keywords.put("this",   THIS);
-        keywords.put("true",   TRUE);
-        keywords.put("var",    VAR);
-        keywords.put("while",  WHILE);
+        keywordLexemes[AND.ordinal()]    = "and";
+        keywordLexemes[CLASS.ordinal()]  = "class";
+        keywordLexemes[ELSE.ordinal()]   = "else";
+        keywordLexemes[FALSE.ordinal()]  = "false";
+        keywordLexemes[FOR.ordinal()]    = "for";
+        keywordLexemes[FUN.ordinal()]    = "fun";
+        keywordLexemes[IF.ordinal()]     = "if";
+        keywordLexemes[NIL.ordinal()]    = "nil";
+        keywordLexemes[OR.ordinal()]     = "or";
+        keywordLexemes[PRINT.ordinal()]  = "print";
+        keywordLexemes[RETURN.ordinal()] = "return";
+        keywordLexemes[SUPER.ordinal()]  = "super";
+        keywordLexemes[THIS.ordinal()]   = "this";
+        keywordLexemes[TRUE.ordinal()]   = "true";
+        keywordLexemes[VAR.ordinal()]    = "var";
+        keywordLexemes[WHILE.ordinal()]  = "while";
+    }
+
+    //null for anything that isnt a keyword
+    static String keywordLexeme(TokenType type) {
+        return keywordLexemes[type.ordinal()];
+    }
+
+    //what every token of the type reads as, keywords included. null for identifiers, literals and EOF,
+    //those dont have one fixed lexeme
+    static String fixedLexeme(TokenType type) {
+        switch (type) {
+            case LEFT_PAREN: return "(";
+            case RIGHT_PAREN: return ")";
+            case LEFT_BRACE: return "{";
+            case RIGHT_BRACE: return "}";
+            case COMMA: return ",";
+            case DOT: return ".";
+            case MINUS: return "-";
+            case PLUS: return "+";
+            case SEMICOLON: return ";";
+            case SLASH: return "/";
+            case STAR: return "*";
+            case BANG: return "!";
+            case BANG_EQUAL: return "!=";
+            case EQUAL: return "=";
+            case EQUAL_EQUAL: return "==";
+            case GREATER: return ">";
+            case GREATER_EQUAL: return ">=";
+            case LESS: return "<";
+            case LESS_EQUAL: return "<=";
+            default: return keywordLexemes[type.ordinal()];
+        }
     }
 
     private int start = 0;
     private int current = 0;
     private int line = 1;
+    private int tokenLine = 1; //line the latest token started on, a string can end on a later one
 
-    final String script;
+    //either a plain String or a byte view like MappedSource
+    final CharSequence script;
     List<Token> tokens = new ArrayList<>();
 
+    //when set, tokens go into this compact buffer instead of the tokens list
+    private TokenBuffer buffer = null;
+
+    //set by nextToken, tokens get handed off one at a time instead of piling up in the list
+    private boolean streaming = false;
+    private Token pending = null;
+
+    //where lexical errors go
+    private final Diagnostics diagnostics;
+
+    //bulk searches for comments, strings and whitespace
+    private final Skipper skipper;
+
+    //when theres a table, identifier and string tokens share one String per distinct name through it
+    //and carry its id. null by default, see SymbolTable
+    private final SymbolTable symbols;
+
     
 
-    Scanner(String script) {
+    //old style, errors go straight to the console through Lox
+    Scanner(CharSequence script) {
+        this(script, Lox.console());
+    }
+
+    Scanner(CharSequence script, Diagnostics diagnostics) {
+        this(script, 0, 1, diagnostics);
+    }
+
+    //picks lexing back up part way through a script, offset has to be the start of a token (or 0)
+    Scanner(CharSequence script, int offset, int line) {
+        this(script, offset, line, Lox.console());
+    }
+
+    Scanner(CharSequence script, int offset, int line, Diagnostics diagnostics) {
+        this(script, offset, line, diagnostics, null);
+    }
+
+    //interns names into symbols, which can be shared with earlier scanners of the same script,
+    //like re-lexing after an edit
+    Scanner(CharSequence script, int offset, int line, Diagnostics diagnostics, SymbolTable symbols) {
         this.script = script;
+        this.diagnostics = diagnostics;
+        this.skipper = new Skipper(script);
+        this.symbols = symbols;
+        this.start = offset;
+        this.current = offset;
+        this.line = line;
+        this.tokenLine = line;
     }
 
     private boolean isAtEnd() {
@@ -54,14 +130,50 @@ public class Scanner {
         
     }
 
+    private void error(int line, String message) {
+        diagnostics.error(line, message);
+    }
+
+    Diagnostics diagnostics() {
+        return diagnostics;
+    }
+
+    SymbolTable symbols() {
+        return symbols;
+    }
+
     //single char tokens dont need a literal param
     private void addToken(TokenType type) {
         addToken(type, null);
     }
 
     private void addToken(TokenType type, Object literal) {
-        String lexem = script.substring(start, current);
-        tokens.add(new Token(type, lexem, literal, line));
+        if (buffer != null) {
+            //the buffer rebuilds lexemes and literals from offsets, so dont copy anything
+            buffer.add(type, start, current - start, line, 0);
+            return;
+        }
+
+        String lexem = substring(start, current);
+        emit(new Token(type, lexem, literal, line));
+    }
+
+    private void emit(Token token) {
+        if (streaming) {
+            pending = token;
+        } else {
+            tokens.add(token);
+        }
+    }
+
+    //numbers get their own path so the buffer can keep the value unboxed
+    private void addNumber(double value) {
+        if (buffer != null) {
+            buffer.add(NUMBER, start, current - start, line, value);
+            return;
+        }
+
+        addToken(NUMBER, value);
     }
 
     //for multi-char types(logical operators)
@@ -81,23 +193,32 @@ public class Scanner {
     }
 
     private void string() {
-        while (peek() != '"') {
-            if (peek() == '\n') {
-                line++;
-            }
+        //jump straight to the closing ", counting the lines on the way
+        int close = skipper.find('"', current);
+        line += skipper.countNewlines(current, close);
+        current = close;
+
+        if (isAtEnd()) {
+            error(line, "Non-terminated String");
+            return;
+        }
 
-            if (isAtEnd()) {
-                Lox.error(line, "Non-terminated String");
-                return;
-            }
+        advance(); //advance once more for the terminating "
 
-            advance();
+        if (buffer != null) {
+            addToken(STRING);
+            return;
         }
 
-        advance(); //advance once more for the terminating "
+        if (symbols == null) {
+            //trim off the ""
+            addToken(STRING, substring(start + 1, current - 1));
+            return;
+        }
 
-        //trim off the ""
-        addToken(STRING, script.substring(start + 1, current - 1));
+        //the symbol is whats inside the "", the lexeme is the same thing quoted
+        int symbol = symbols.intern(script, start + 1, current - 1);
+        emit(new Token(STRING, symbols.quoted(symbol), symbols.name(symbol), line, symbol));
     }
 
     private boolean isDigit(char c) {
@@ -108,6 +229,11 @@ public class Scanner {
         return false;
     }
 
+    //copies a range of the script out as a String, a byte view decodes just this slice
+    private String substring(int from, int to) {
+        return script.subSequence(from, to).toString();
+    }
+
     private char peekAhead() {
         if (current + 1 >= script.length()) return '\0';
         return script.charAt(current + 1);
@@ -127,7 +253,11 @@ public class Scanner {
             while (isDigit(peek())) advance();
         }
 
-        addToken(NUMBER, Double.parseDouble(script.substring(start, current)));
+        addNumber(NumberDecoder.decode(script, start, current));
+    }
+
+    private boolean isWhitespace(char c) {
+        return c == ' ' || c == '\r' || c == '\t' || c == '\n';
     }
 
     private boolean isAlpha(char c) {
@@ -143,18 +273,76 @@ public class Scanner {
     private void identifier() {
         while (isAlphaNumeric(peek())) advance();
 
-        addToken(IDENTIFIER, script.substring(start, current));
+        //classify straight from the chars, so theres one token per identifier and keywords copy nothing
+        TokenType type = keywordType();
+        if (type == IDENTIFIER) {
+            if (buffer != null) {
+                addToken(IDENTIFIER);
+            } else if (symbols == null) {
+                //the name is its own literal, one copy does for both
+                String name = substring(start, current);
+                emit(new Token(IDENTIFIER, name, name, line));
+            } else {
+                int symbol = symbols.intern(script, start, current);
+                String name = symbols.name(symbol);
+                emit(new Token(IDENTIFIER, name, name, line, symbol));
+            }
+            return;
+        }
 
+        if (buffer != null) {
+            buffer.add(type, start, current - start, line, 0);
+        } else {
+            String lexem = keywordLexemes[type.ordinal()];
+            emit(new Token(type, lexem, lexem, line));
+        }
     }
 
-    private void keyWord() {
-        //if identifier matches a keyword, remove that token and replace it with a keyword token
-        if (keywords.containsKey(tokens.getLast().lexum)) {
+    //switch on the first char (and second where keywords share one), then compare the rest in place
+    private TokenType keywordType() {
+        switch (script.charAt(start)) {
+            case 'a': return checkKeyword(1, "nd", AND);
+            case 'c': return checkKeyword(1, "lass", CLASS);
+            case 'e': return checkKeyword(1, "lse", ELSE);
+            case 'f':
+                if (current - start > 1) {
+                    switch (script.charAt(start + 1)) {
+                        case 'a': return checkKeyword(2, "lse", FALSE);
+                        case 'o': return checkKeyword(2, "r", FOR);
+                        case 'u': return checkKeyword(2, "n", FUN);
+                    }
+                }
+                break;
+            case 'i': return checkKeyword(1, "f", IF);
+            case 'n': return checkKeyword(1, "il", NIL);
+            case 'o': return checkKeyword(1, "r", OR);
+            case 'p': return checkKeyword(1, "rint", PRINT);
+            case 'r': return checkKeyword(1, "eturn", RETURN);
+            case 's': return checkKeyword(1, "uper", SUPER);
+            case 't':
+                if (current - start > 1) {
+                    switch (script.charAt(start + 1)) {
+                        case 'h': return checkKeyword(2, "is", THIS);
+                        case 'r': return checkKeyword(2, "ue", TRUE);
+                    }
+                }
+                break;
+            case 'v': return checkKeyword(1, "ar", VAR);
+            case 'w': return checkKeyword(1, "hile", WHILE);
+        }
 
-          Token unaddedToken = tokens.removeLast();
-          addToken(keywords.get(unaddedToken.lexum) , unaddedToken.lexum);
+        return IDENTIFIER;
+    }
+
+    private TokenType checkKeyword(int offset, String rest, TokenType type) {
+        //length has to match exactly, otherwise "fort" would come back as FOR
+        if (current - start != offset + rest.length()) return IDENTIFIER;
+
+        for (int i = 0; i < rest.length(); i++) {
+            if (script.charAt(start + offset + i) != rest.charAt(i)) return IDENTIFIER;
         }
-        
+
+        return type;
     }
 
     public void scanToken() {
@@ -162,10 +350,20 @@ public class Scanner {
         //all are chars that dont need to check fro the next char
         switch (c) {
             
-            case ' ': 
-            case '\r': 
-            case '\t': break;
-            case '\n': line++; break;
+            case ' ':
+            case '\r':
+            case '\t':
+            case '\n':
+                if (c == '\n') line++;
+
+                //a run of it, like indentation, gets skipped in one go
+                if (isWhitespace(peek())) {
+                    int end = skipper.skipWhitespace(current);
+                    line += skipper.countNewlines(current, end);
+                    current = end;
+                    start = end - 1; //as if the last one was scanned by itself, the EOF token takes its lexeme from here
+                }
+                break;
             case '(': addToken(LEFT_PAREN); break;
             case ')': addToken(RIGHT_PAREN); break;
             case '{': addToken(LEFT_BRACE); break;
@@ -182,30 +380,28 @@ public class Scanner {
             case '>': addToken(match('=') ? GREATER_EQUAL : GREATER); break;
             case '/': if (match('/')) {
                 //handles single line comments
-                while (peek() != '\n' && !isAtEnd()) advance();
+                current = skipper.find('\n', current);
             } else if (match('*')) {
                 int errorLine = line; // this line track the openeing comment line for error tracking
 
-
-                //handles block comments, nested doesnt work 
-                while (peek() != '\0') {
-                    if (advance() == '\n') {
-                        line++;
-                    }
-
-                    if (peek() == '*' && peekAhead() == '/') {
-                        break;
-                    }
-                }
-                
-                if (peek() == '\0') {
-                    Lox.error(errorLine, "Non-terminated Comment");
+                //handles block comments, nested doesnt work. the body always takes at least one char
+                //before looking for the */, so /**/ doesnt close itself, and a \0 ends the comment
+                //as unterminated, scanning picks up again at the \0
+                int body = current;
+                int close = body < script.length() ? skipper.findCommentEnd(body + 1) : -1;
+                int nul = skipper.findNul(body);
+
+                if (close < 0 || nul < close) {
+                    int stop = close < 0 ? Math.min(nul, script.length()) : nul;
+                    line += skipper.countNewlines(body, stop);
+                    current = stop;
+                    error(errorLine, "Non-terminated Comment");
                     return;
                 }
 
-                //advance twice to consume terminating comments
-                advance();
-                advance();
+                //skip past the terminating */
+                line += skipper.countNewlines(body, close);
+                current = close + 2;
             } else {
                 addToken(SLASH);
             } break;
@@ -216,9 +412,12 @@ public class Scanner {
                     number();
                 } else if (isAlpha(c)) {
                     identifier();
-                    keyWord();
                 } else {
-                    Lox.error(line, "Unexpected character."); break;
+                    //swallow the rest of a multi byte utf-8 char so its only reported once
+                    if (script instanceof MappedSource && ((MappedSource) script).isMultiByte(c)) {
+                        while ((peek() & 0xC0) == 0x80) advance();
+                    }
+                    error(line, "Unexpected character."); break;
                 }
                 
         }
@@ -228,6 +427,10 @@ public class Scanner {
     }
 
     public List<Token> scanTokens() {
+        PhaseEvents.Scan event = new PhaseEvents.Scan();
+        event.begin();
+        int errors = diagnostics.errorCount();
+
         while (!isAtEnd()) {
             start = current;
             scanToken();
@@ -237,10 +440,92 @@ public class Scanner {
         }
         //mark end of file after we get to the end
         addToken(EOF);
+
+        event.end();
+        if (event.shouldCommit()) {
+            event.sourceLength = script.length();
+            event.tokens = buffer != null ? buffer.size() : tokens.size();
+            event.errors = diagnostics.errorCount() - errors;
+            event.commit();
+        }
         return tokens;
     }
 
-    public String getScript() {
+    //pull style scanning, hands back the next token without keeping any of them around,
+    //once the script runs out every call returns an EOF token
+    Token nextToken() {
+        streaming = true;
+
+        while (pending == null && !isAtEnd()) {
+            start = current;
+            tokenLine = line;
+            scanToken();
+        }
+
+        if (pending == null) addToken(EOF);
+
+        Token token = pending;
+        pending = null;
+        return token;
+    }
+
+    //scans just far enough to add one more token to the list, false once the script runs out
+    boolean scanNextToken() {
+        int count = tokens.size();
+
+        while (!isAtEnd()) {
+            start = current;
+            tokenLine = line;
+            scanToken();
+
+            if (tokens.size() > count) return true;
+        }
+
+        return false;
+    }
+
+    //where the last token from scanNextToken started
+    int tokenStart() {
+        return start;
+    }
+
+    int tokenLine() {
+        return tokenLine;
+    }
+
+    //lexes every token that starts before limit, the last token (or a comment) can run past it
+    List<Token> scanUntil(int limit) {
+        while (current < limit && !isAtEnd()) {
+            start = current;
+            tokenLine = line;
+            scanToken();
+        }
+
+        return tokens;
+    }
+
+    //where scanning stopped and the line it stopped on
+    int position() {
+        return current;
+    }
+
+    int currentLine() {
+        return line;
+    }
+
+    //call once scanNextToken (or scanUntil) runs dry
+    void addEofToken() {
+        addToken(EOF);
+    }
+
+    //same as scanTokens but fills a TokenBuffer, so no Token objects or lexeme copies are made
+    TokenBuffer scanTokenBuffer() {
+        buffer = new TokenBuffer(script);
+        scanTokens();
+        return buffer;
+    }
+
+    public CharSequence getScript() {
         return script;
     }
 
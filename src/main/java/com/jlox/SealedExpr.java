@@ -0,0 +1,124 @@
+package com.jlox;
+
+import java.util.function.Function;
+
+//the Expr types as a sealed interface of records, generated by GenerateAST --sealed.
+//kind() is a dense ordinal for tables and switches, match() is the exhaustive type switch and
+//from/toExpr convert, accept still works for visitors
+sealed interface SealedExpr permits SealedExpr.Binary, SealedExpr.Grouping, SealedExpr.Literal, SealedExpr.Unary {
+
+  int BINARY = 0;
+  int GROUPING = 1;
+  int LITERAL = 2;
+  int UNARY = 3;
+  int KINDS = 4;
+
+  int kind();
+
+  <R> R accept(Visitor<R> visitor);
+
+  interface Visitor<R> {
+    R visitBinaryExpr(Binary expr);
+    R visitGroupingExpr(Grouping expr);
+    R visitLiteralExpr(Literal expr);
+    R visitUnaryExpr(Unary expr);
+  }
+
+  record Binary(SealedExpr left, Token operator, SealedExpr right) implements SealedExpr {
+    @Override
+    public int kind() {
+      return BINARY;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitBinaryExpr(this);
+    }
+  }
+
+  record Grouping(SealedExpr expression) implements SealedExpr {
+    @Override
+    public int kind() {
+      return GROUPING;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitGroupingExpr(this);
+    }
+  }
+
+  record Literal(Object value) implements SealedExpr {
+    @Override
+    public int kind() {
+      return LITERAL;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitLiteralExpr(this);
+    }
+  }
+
+  record Unary(Token operator, SealedExpr right) implements SealedExpr {
+    @Override
+    public int kind() {
+      return UNARY;
+    }
+
+    @Override
+    public <R> R accept(Visitor<R> visitor) {
+      return visitor.visitUnaryExpr(this);
+    }
+  }
+
+  static <R> R match(SealedExpr expr, Function<Binary, R> binary, Function<Grouping, R> grouping, Function<Literal, R> literal, Function<Unary, R> unary) {
+    if (expr instanceof Binary) return binary.apply((Binary) expr);
+    if (expr instanceof Grouping) return grouping.apply((Grouping) expr);
+    if (expr instanceof Literal) return literal.apply((Literal) expr);
+    if (expr instanceof Unary) return unary.apply((Unary) expr);
+    throw new IllegalStateException("Bad node " + expr);
+  }
+
+  static SealedExpr from(Expr expr) {
+    if (expr instanceof Expr.Binary) {
+      Expr.Binary node = (Expr.Binary) expr;
+      return new Binary(from(node.left), node.operator, from(node.right));
+    }
+    if (expr instanceof Expr.Grouping) {
+      Expr.Grouping node = (Expr.Grouping) expr;
+      return new Grouping(from(node.expression));
+    }
+    if (expr instanceof Expr.Literal) {
+      Expr.Literal node = (Expr.Literal) expr;
+      return new Literal(node.value);
+    }
+    if (expr instanceof Expr.Unary) {
+      Expr.Unary node = (Expr.Unary) expr;
+      return new Unary(node.operator, from(node.right));
+    }
+    throw new IllegalStateException("Bad node " + expr);
+  }
+
+  static Expr toExpr(SealedExpr expr) {
+    switch (expr.kind()) {
+      case BINARY: {
+        Binary node = (Binary) expr;
+        return new Expr.Binary(toExpr(node.left()), node.operator(), toExpr(node.right()));
+      }
+      case GROUPING: {
+        Grouping node = (Grouping) expr;
+        return new Expr.Grouping(toExpr(node.expression()));
+      }
+      case LITERAL: {
+        Literal node = (Literal) expr;
+        return new Expr.Literal(node.value());
+      }
+      case UNARY: {
+        Unary node = (Unary) expr;
+        return new Expr.Unary(node.operator(), toExpr(node.right()));
+      }
+      default: throw new IllegalStateException("Bad kind " + expr.kind());
+    }
+  }
+}
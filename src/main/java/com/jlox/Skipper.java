@@ -0,0 +1,124 @@
+package com.jlox;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+//bulk searches for the scanners skip loops (comment and string bodies, runs of whitespace and the
+//newlines in them) so they dont go one charAt at a time. a MappedSource is searched 8 bytes at a time
+//straight off the mapping with SWAR bit tricks, a String goes through String.indexOf, which hotspot
+//already turns into vector instructions, anything else gets a plain loop.
+//the scanner only ever moves forward, the String path relies on that to cache the next \n and \0
+class Skipper {
+
+    //every byte 0x01, 0x7f and 0x80
+    private static final long ONES = 0x0101010101010101L;
+    private static final long LOWS = 0x7F7F7F7F7F7F7F7FL;
+
+    private final CharSequence script;
+    private final String string; //script if its a String
+    private final ByteBuffer bytes; //little endian view of a MappedSource, so byte i of a word is bits 8i..8i+7
+    private final int length;
+
+    //first \n and \0 at or after where the last search for them started, length if theres none.
+    //-1 until the first search
+    private int nextNewline = -1;
+    private int nextNul = -1;
+
+    Skipper(CharSequence script) {
+        this.script = script;
+        this.string = script instanceof String ? (String) script : null;
+        this.bytes = script instanceof MappedSource ? ((MappedSource) script).bytes().order(ByteOrder.LITTLE_ENDIAN) : null;
+        this.length = script.length();
+    }
+
+    //0x80 in every byte of word that equals the byte in pattern, 0 in the rest. no false positives,
+    //the & LOWS keeps the add from carrying out of a byte
+    private static long matches(long word, long pattern) {
+        long diff = word ^ pattern;
+        return ~(((diff & LOWS) + LOWS) | diff | LOWS);
+    }
+
+    //first index of c at or after from, length if there isnt one. c has to be ascii
+    int find(char c, int from) {
+        if (string != null) {
+            int index = string.indexOf(c, from);
+            return index < 0 ? length : index;
+        }
+
+        int i = from;
+        if (bytes != null) {
+            long pattern = ONES * c;
+            for (; i + 8 <= length; i += 8) {
+                long found = matches(bytes.getLong(i), pattern);
+                if (found != 0) return i + (Long.numberOfTrailingZeros(found) >>> 3);
+            }
+        }
+
+        for (; i < length; i++) {
+            if (script.charAt(i) == c) return i;
+        }
+        return length;
+    }
+
+    //where the first */ at or after from starts, -1 if there isnt one
+    int findCommentEnd(int from) {
+        if (string != null) return string.indexOf("*/", from);
+
+        for (int star = find('*', from); star < length; star = find('*', star + 1)) {
+            if (star + 1 < length && script.charAt(star + 1) == '/') return star;
+        }
+        return -1;
+    }
+
+    //first \0 at or after from, length if there isnt one
+    int findNul(int from) {
+        if (nextNul < from) nextNul = find('\0', from);
+        return nextNul;
+    }
+
+    //how many \n in [from, to)
+    int countNewlines(int from, int to) {
+        int count = 0;
+
+        if (bytes != null) {
+            int i = from;
+            for (; i + 8 <= to; i += 8) {
+                count += Long.bitCount(matches(bytes.getLong(i), ONES * '\n'));
+            }
+            for (; i < to; i++) {
+                if (bytes.get(i) == '\n') count++;
+            }
+            return count;
+        }
+
+        //hop from newline to newline, the cache means no stretch of script gets searched twice
+        if (nextNewline < from) nextNewline = find('\n', from);
+        while (nextNewline < to) {
+            count++;
+            nextNewline = find('\n', nextNewline + 1);
+        }
+        return count;
+    }
+
+    //first index at or after from that isnt a space, \r, \t or \n, length if theres none
+    int skipWhitespace(int from) {
+        int i = from;
+
+        if (bytes != null) {
+            for (; i + 8 <= length; i += 8) {
+                long word = bytes.getLong(i);
+                long blank = matches(word, ONES * ' ') | matches(word, ONES * '\n')
+                    | matches(word, ONES * '\t') | matches(word, ONES * '\r');
+
+                long other = ~blank & (ONES << 7);
+                if (other != 0) return i + (Long.numberOfTrailingZeros(other) >>> 3);
+            }
+        }
+
+        for (; i < length; i++) {
+            char c = script.charAt(i);
+            if (c != ' ' && c != '\n' && c != '\t' && c != '\r') return i;
+        }
+        return length;
+    }
+}
@@ -0,0 +1,35 @@
+package com.jlox;
+
+//a window into the source, used for lexemes so nothing gets copied until someone calls toString
+class SourceSlice implements CharSequence {
+
+    private final CharSequence source;
+    private final int start;
+    private final int end;
+
+    SourceSlice(CharSequence source, int start, int end) {
+        this.source = source;
+        this.start = start;
+        this.end = end;
+    }
+
+    @Override
+    public int length() {
+        return end - start;
+    }
+
+    @Override
+    public char charAt(int index) {
+        return source.charAt(start + index);
+    }
+
+    @Override
+    public CharSequence subSequence(int from, int to) {
+        return new SourceSlice(source, start + from, start + to);
+    }
+
+    @Override
+    public String toString() {
+        return source.subSequence(start, end).toString();
+    }
+}
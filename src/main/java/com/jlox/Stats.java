@@ -0,0 +1,52 @@
+package com.jlox;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+
+import com.sun.management.ThreadMXBean;
+
+//--stats, wall time, throughput and bytes allocated by each phase of one run. allocation is what
+//this thread allocated, phases all run on the calling thread except the workers of --parallel
+class Stats {
+
+    private static final ThreadMXBean threads = threadBean();
+
+    private final StringBuilder report = new StringBuilder();
+    private long startNanos;
+    private long startBytes;
+
+    //null when this jvm cant count allocations, the column is left out then
+    private static ThreadMXBean threadBean() {
+        if (!(ManagementFactory.getThreadMXBean() instanceof ThreadMXBean)) return null;
+
+        ThreadMXBean threads = (ThreadMXBean) ManagementFactory.getThreadMXBean();
+        if (!threads.isThreadAllocatedMemorySupported()) return null;
+        if (!threads.isThreadAllocatedMemoryEnabled()) threads.setThreadAllocatedMemoryEnabled(true);
+        return threads;
+    }
+
+    void begin() {
+        startBytes = allocated();
+        startNanos = System.nanoTime();
+    }
+
+    //amount is how much work the phase got through, in unit, for the throughput column
+    void end(String phase, long amount, String unit) {
+        long nanos = System.nanoTime() - startNanos;
+        long bytes = allocated() - startBytes;
+
+        double millis = nanos / 1e6;
+        double perSecond = nanos == 0 ? 0 : amount * 1e9 / nanos;
+        report.append(String.format("[stats] %-10s %10.3f ms %14.0f %s/s", phase, millis, perSecond, unit));
+        if (threads != null) report.append(String.format(" %12.1f KB allocated", bytes / 1024.0));
+        report.append('\n');
+    }
+
+    private static long allocated() {
+        return threads == null ? 0 : threads.getCurrentThreadAllocatedBytes();
+    }
+
+    void printTo(PrintStream out) {
+        out.print(report);
+    }
+}
@@ -0,0 +1,128 @@
+package com.jlox;
+
+import java.util.Arrays;
+
+//one canonical String per distinct identifier or string literal in a compilation, each with a dense
+//int id in the order they first show up. the scanner looks names up straight from the source range,
+//so a name thats been seen before costs a hash and a compare and copies nothing, and anything that
+//later needs to tell names apart can compare ids instead of calling equals.
+//a scanner only interns when its handed a table, hashing every name is wasted work when most are
+//unique or the tokens dont live long. not thread safe, a scanner owns its table (ParallelScanner
+//merges its chunks' tables afterwards)
+class SymbolTable {
+
+    //symbol of every token that isnt an identifier or a string
+    static final int NONE = -1;
+
+    private String[] names = new String[16];
+    private String[] quoted = new String[16]; //the name in "", the lexeme of a string token, made on demand
+    private int[] hashes = new int[16];
+    private int size = 0;
+
+    //open addressing with linear probing, id + 1 in a used slot and 0 in an empty one.
+    //never more than half full
+    private int[] slots = new int[32];
+
+
+    //id for script[from, to), the String is only made the first time the name comes up
+    int intern(CharSequence script, int from, int to) {
+        int hash = 0;
+        int bits = 0;
+        for (int i = from; i < to; i++) {
+            char c = script.charAt(i);
+            hash = 31 * hash + c;
+            bits |= c;
+        }
+
+        //a mapped file hands out raw bytes, past ascii those arent the chars the name decodes to
+        if (bits >= 0x80 && script instanceof MappedSource) {
+            return intern(script.subSequence(from, to).toString());
+        }
+
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) return add(script.subSequence(from, to).toString(), hash, slot);
+
+            int id = entry - 1;
+            if (hashes[id] == hash && sameChars(names[id], script, from, to)) return id;
+        }
+    }
+
+    //the hash above is the same as String.hashCode, so this can use the one the String caches
+    int intern(String name) {
+        int hash = name.hashCode();
+
+        int mask = slots.length - 1;
+        for (int slot = spread(hash) & mask; ; slot = (slot + 1) & mask) {
+            int entry = slots[slot];
+            if (entry == 0) return add(name, hash, slot);
+
+            int id = entry - 1;
+            if (hashes[id] == hash && names[id].equals(name)) return id;
+        }
+    }
+
+    //id here for symbol id of other, a name thats new here keeps the Strings other already made,
+    //so tokens scanned against other can be kept as they are
+    int intern(SymbolTable other, int id) {
+        int before = size;
+        int found = intern(other.names[id]);
+        if (size > before) quoted[found] = other.quoted[id];
+        return found;
+    }
+
+    String name(int id) {
+        return names[id];
+    }
+
+    String quoted(int id) {
+        if (quoted[id] == null) quoted[id] = '"' + names[id] + '"';
+        return quoted[id];
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int add(String name, int hash, int slot) {
+        if (size == names.length) {
+            names = Arrays.copyOf(names, size * 2);
+            quoted = Arrays.copyOf(quoted, size * 2);
+            hashes = Arrays.copyOf(hashes, size * 2);
+        }
+
+        int id = size++;
+        names[id] = name;
+        hashes[id] = hash;
+        slots[slot] = id + 1;
+
+        if (size * 2 > slots.length) rehash();
+        return id;
+    }
+
+    private void rehash() {
+        slots = new int[slots.length * 2];
+        int mask = slots.length - 1;
+
+        for (int id = 0; id < size; id++) {
+            int slot = spread(hashes[id]) & mask;
+            while (slots[slot] != 0) slot = (slot + 1) & mask;
+            slots[slot] = id + 1;
+        }
+    }
+
+    //slots are picked by the low bits, fold the high ones in too
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean sameChars(String name, CharSequence script, int from, int to) {
+        if (name.length() != to - from) return false;
+
+        for (int i = 0; i < name.length(); i++) {
+            if (name.charAt(i) != script.charAt(from + i)) return false;
+        }
+        return true;
+    }
+}
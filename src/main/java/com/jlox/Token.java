@@ -5,13 +5,19 @@ public class Token {
     final String lexum; //raw string data from source code
     final Object literal; //raw values for integers or strings, could be of any type
     final int line; //used for error handling
+    final int symbol; //SymbolTable id for identifiers and strings, SymbolTable.NONE for everything else
 
 
     Token (TokenType type, String lexum, Object literal, int line) {
+        this(type, lexum, literal, line, SymbolTable.NONE);
+    }
+
+    Token (TokenType type, String lexum, Object literal, int line, int symbol) {
         this.type = type;
         this.lexum = lexum;
         this.literal = literal;
         this.line = line;
+        this.symbol = symbol;
     }
 
     public String toString() {
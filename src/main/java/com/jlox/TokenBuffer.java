@@ -0,0 +1,105 @@
+package com.jlox;
+
+import java.util.Arrays;
+
+import static com.jlox.TokenType.*;
+
+//a compact token list, one slot per token spread across parallel primitive arrays
+//instead of a Token object, a lexeme String and a boxed Double for every token
+class TokenBuffer {
+
+    private static final TokenType[] TYPES = TokenType.values();
+
+    final CharSequence source;
+
+    private byte[] types;
+    private int[] starts;
+    private int[] lengths;
+    private int[] lines;
+    private double[] numbers; //only meaningful for NUMBER slots
+    private int size = 0;
+
+
+    TokenBuffer(CharSequence source) {
+        this.source = source;
+
+        int capacity = 64;
+        types = new byte[capacity];
+        starts = new int[capacity];
+        lengths = new int[capacity];
+        lines = new int[capacity];
+        numbers = new double[capacity];
+    }
+
+    void add(TokenType type, int start, int length, int line, double number) {
+        if (size == types.length) grow();
+
+        types[size] = (byte) type.ordinal();
+        starts[size] = start;
+        lengths[size] = length;
+        lines[size] = line;
+        numbers[size] = number;
+        size++;
+    }
+
+    private void grow() {
+        int capacity = types.length * 2;
+        types = Arrays.copyOf(types, capacity);
+        starts = Arrays.copyOf(starts, capacity);
+        lengths = Arrays.copyOf(lengths, capacity);
+        lines = Arrays.copyOf(lines, capacity);
+        numbers = Arrays.copyOf(numbers, capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    TokenType type(int index) {
+        return TYPES[types[index]];
+    }
+
+    int start(int index) {
+        return starts[index];
+    }
+
+    int length(int index) {
+        return lengths[index];
+    }
+
+    int line(int index) {
+        return lines[index];
+    }
+
+    double number(int index) {
+        return numbers[index];
+    }
+
+    //zero copy view of the raw lexeme
+    CharSequence lexeme(int index) {
+        return new SourceSlice(source, starts[index], starts[index] + lengths[index]);
+    }
+
+    //same literal the list based scanner would have put on the Token, built on demand
+    Object literal(int index) {
+        switch (type(index)) {
+            case NUMBER:
+                return numbers[index];
+            case STRING:
+                //trim off the ""
+                return source.subSequence(starts[index] + 1, starts[index] + lengths[index] - 1).toString();
+            case IDENTIFIER:
+                return lexeme(index).toString();
+            default:
+                //keywords carry their own lexeme, everything else has no literal
+                return Scanner.keywordLexeme(type(index));
+        }
+    }
+
+    //only for callers that really need an object, like error reporting or building an Expr node
+    Token token(int index) {
+        String keyword = Scanner.keywordLexeme(type(index));
+        String lexem = keyword != null ? keyword : lexeme(index).toString();
+        return new Token(type(index), lexem, literal(index), lines[index]);
+    }
+}
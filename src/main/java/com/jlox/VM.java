@@ -0,0 +1,164 @@
+package com.jlox;
+
+//runs a Chunk on a stack. the stack is split in two, numbers[] holds doubles and values[] holds
+//everything else, with NUMBER in values[] marking the slots that are numbers. so arithmetic never boxes,
+//the result only gets boxed once at OP_RETURN
+class VM {
+
+    private static final Object NUMBER = new Object();
+
+    private double[] numbers = new double[0];
+    private Object[] values = new Object[0];
+    private final Diagnostics diagnostics;
+
+
+    //old style, runtime errors go straight to the console through Lox
+    VM() {
+        this(Lox.console());
+    }
+
+    VM(Diagnostics diagnostics) {
+        this.diagnostics = diagnostics;
+    }
+
+    //same contract as Interpreter.interpret, the printed value or null after a runtime error
+    String interpret(Chunk chunk) {
+        try {
+            return Interpreter.stringify(run(chunk));
+        } catch (RuntimeError error) {
+            diagnostics.runtimeError(error);
+            return null;
+        }
+    }
+
+    //always gives the same value (or error) as Interpreter.evaluate on the tree the chunk came from
+    Object run(Chunk chunk) {
+        //the stack only grows when a bigger chunk comes along, so a vm can be reused with no allocation
+        if (values.length < chunk.maxStack) {
+            numbers = new double[chunk.maxStack];
+            values = new Object[chunk.maxStack];
+        }
+
+        double[] numbers = this.numbers;
+        Object[] values = this.values;
+        byte[] code = chunk.code();
+        double[] pool = chunk.numbers();
+        Object[] constants = chunk.constants();
+
+        int ip = 0;
+        int top = 0; //next free slot
+
+        while (true) {
+            byte op = code[ip++];
+
+            switch (op) {
+                case Chunk.OP_NUMBER:
+                    numbers[top] = pool[chunk.readIndex(ip)];
+                    values[top++] = NUMBER;
+                    ip += 3;
+                    break;
+                case Chunk.OP_CONSTANT:
+                    values[top++] = constants[chunk.readIndex(ip)];
+                    ip += 3;
+                    break;
+                case Chunk.OP_NIL: values[top++] = null; break;
+                case Chunk.OP_TRUE: values[top++] = true; break;
+                case Chunk.OP_FALSE: values[top++] = false; break;
+
+                case Chunk.OP_ADD: {
+                    Object left = values[top - 2];
+                    Object right = values[top - 1];
+
+                    if (left == NUMBER && right == NUMBER) {
+                        numbers[top - 2] += numbers[top - 1];
+                    } else if (left instanceof String && right instanceof String) {
+                        values[top - 2] = (String) left + (String) right;
+                    } else {
+                        throw new RuntimeError(chunk.token(ip - 1), "Operands must be two numbers or two strings.");
+                    }
+
+                    top--;
+                    break;
+                }
+                case Chunk.OP_SUBTRACT:
+                    checkNumbers(chunk, ip, top);
+                    numbers[top - 2] -= numbers[top - 1];
+                    top--;
+                    break;
+                case Chunk.OP_MULTIPLY:
+                    checkNumbers(chunk, ip, top);
+                    numbers[top - 2] *= numbers[top - 1];
+                    top--;
+                    break;
+                case Chunk.OP_DIVIDE:
+                    checkNumbers(chunk, ip, top);
+                    numbers[top - 2] /= numbers[top - 1];
+                    top--;
+                    break;
+
+                case Chunk.OP_NEGATE:
+                    if (values[top - 1] != NUMBER) {
+                        throw new RuntimeError(chunk.token(ip - 1), "Operand must be a number.");
+                    }
+                    numbers[top - 1] = -numbers[top - 1];
+                    break;
+                case Chunk.OP_NOT:
+                    //NUMBER is neither null nor a Boolean, so numbers come out truthy like they should
+                    values[top - 1] = !Interpreter.isTruthy(values[top - 1]);
+                    break;
+
+                case Chunk.OP_EQUAL: {
+                    Object left = values[top - 2];
+                    Object right = values[top - 1];
+                    boolean equal;
+
+                    if (left == NUMBER && right == NUMBER) {
+                        //Double.equals, so NaN == NaN and 0 != -0 same as the tree walker
+                        equal = Double.doubleToLongBits(numbers[top - 2]) == Double.doubleToLongBits(numbers[top - 1]);
+                    } else if (left == NUMBER || right == NUMBER) {
+                        equal = false;
+                    } else {
+                        equal = Interpreter.isEqual(left, right);
+                    }
+
+                    values[top - 2] = equal;
+                    top--;
+                    break;
+                }
+                case Chunk.OP_GREATER:
+                    checkNumbers(chunk, ip, top);
+                    values[top - 2] = numbers[top - 2] > numbers[top - 1];
+                    top--;
+                    break;
+                case Chunk.OP_GREATER_EQUAL:
+                    checkNumbers(chunk, ip, top);
+                    values[top - 2] = numbers[top - 2] >= numbers[top - 1];
+                    top--;
+                    break;
+                case Chunk.OP_LESS:
+                    checkNumbers(chunk, ip, top);
+                    values[top - 2] = numbers[top - 2] < numbers[top - 1];
+                    top--;
+                    break;
+                case Chunk.OP_LESS_EQUAL:
+                    checkNumbers(chunk, ip, top);
+                    values[top - 2] = numbers[top - 2] <= numbers[top - 1];
+                    top--;
+                    break;
+
+                case Chunk.OP_RETURN:
+                    if (values[0] == NUMBER) return numbers[0];
+                    return values[0];
+
+                default:
+                    throw new IllegalStateException("Unknown opcode " + op + " at " + (ip - 1));
+            }
+        }
+    }
+
+    private void checkNumbers(Chunk chunk, int ip, int top) {
+        if (values[top - 2] != NUMBER || values[top - 1] != NUMBER) {
+            throw new RuntimeError(chunk.token(ip - 1), "Operands must be numbers.");
+        }
+    }
+}
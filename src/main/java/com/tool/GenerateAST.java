@@ -7,19 +7,29 @@ import java.util.List;
 
 public class GenerateAST {
     public static void main(String[] args) throws IOException {
-        if (args.length != 1) {
-            System.out.println("Usage: Generate AST [output directory]");
+        boolean sealed = args.length == 2 && args[0].equals("--sealed");
+        if (args.length != 1 && !sealed) {
+            System.out.println("Usage: Generate AST [--sealed] [output directory]");
             System.exit(64);
         }
 
-        String dir = args[0];
+        String dir = args[args.length - 1];
 
-        defineAst(dir, "Expr", Arrays.asList(
+        List<String> exprTypes = Arrays.asList(
             "Binary   : Expr left, Token operator, Expr right",
             "Grouping : Expr expression",
             "Literal  : Object value",
             "Unary    : Token operator, Expr right"
-        ));
+        );
+
+        //--sealed only adds the sealed interface next to the classic classes, nothing else moves over yet
+        if (sealed) {
+            defineSealed(dir, "Expr", exprTypes);
+            return;
+        }
+
+        defineAst(dir, "Expr", exprTypes);
+        defineArena(dir, "Expr", exprTypes);
 
     }
 
@@ -40,9 +50,40 @@ public class GenerateAST {
         //write to file basic structure
         writer.println();
         writer.println("import java.util.List;");
+        writer.println("import java.util.Objects;");
         writer.println();
         writer.println("abstract class " + baseName + '{');
 
+        //every node is a value, equals and hashCode compare the whole subtree. the hash is cached
+        //in the base class so hashing a subtree again is free
+        writer.println();
+        writer.println("  //cached structural hash, 0 until hashCode is first called");
+        writer.println("  private int hash = 0;");
+        writer.println();
+        writer.println("  @Override");
+        writer.println("  public final int hashCode() {");
+        writer.println("    int h = hash;");
+        writer.println("    if (h == 0) {");
+        writer.println("      h = structuralHash();");
+        writer.println("      if (h == 0) h = 1;");
+        writer.println("      hash = h;");
+        writer.println("    }");
+        writer.println("    return h;");
+        writer.println("  }");
+        writer.println();
+        writer.println("  abstract int structuralHash();");
+        writer.println();
+
+        //Token keeps identity equality, inside a tree a token only has to read the same
+        writer.println("  static boolean sameToken(Token a, Token b) {");
+        writer.println("    return a.type == b.type && a.lexum.equals(b.lexum);");
+        writer.println("  }");
+        writer.println();
+        writer.println("  static int tokenHash(Token token) {");
+        writer.println("    return 31 * token.type.ordinal() + token.lexum.hashCode();");
+        writer.println("  }");
+        writer.println();
+
 
         //create visitor interface
         defineVisitor(writer, baseName, types);
@@ -102,8 +143,447 @@ public class GenerateAST {
         writer.println("      return visitor.visit" +
             className + baseName + "(this);");
         writer.println("    }");
+
+        defineEquality(writer, className, fields);
+        writer.println("  }");
+
+    }
+
+
+    //structural equals and the hash the base class caches, every field takes part
+    private static void defineEquality(PrintWriter writer, String className, String[] fields) {
+        writer.println();
+        writer.println("    @Override");
+        writer.println("    public boolean equals(Object object) {");
+        writer.println("      if (this == object) return true;");
+        writer.println("      if (!(object instanceof " + className + ")) return false;");
+        writer.println();
+        writer.println("      " + className + " other = (" + className + ") object;");
+        writer.print("      return hashCode() == other.hashCode()");
+        for (String field : fields) {
+            String type = field.split(" ")[0];
+            String name = field.split(" ")[1];
+            writer.println();
+            if (type.equals("Token")) {
+                writer.print("          && sameToken(" + name + ", other." + name + ")");
+            } else {
+                writer.print("          && Objects.equals(" + name + ", other." + name + ")");
+            }
+        }
+        writer.println(";");
+        writer.println("    }");
+
+        writer.println();
+        writer.println("    @Override");
+        writer.println("    int structuralHash() {");
+        //seeded with the class name so a node never hashes the same as its only child
+        writer.println("      int h = " + className.hashCode() + ";");
+        for (String field : fields) {
+            String type = field.split(" ")[0];
+            String name = field.split(" ")[1];
+            String hash = type.equals("Token") ? "tokenHash(" + name + ")" : "Objects.hashCode(" + name + ")";
+            writer.println("      h = 31 * h + " + hash + ";");
+        }
+        writer.println("      return h;");
+        writer.println("    }");
+    }
+
+
+    //the flat version of the same types, every node is an int index into parallel int columns.
+    //kinds[] holds the node kind in the low byte and, for a type with a Token field, the token type
+    //ordinal above it. each field gets a slot column:
+    //  Expr   -> the child node index
+    //  Token  -> the line (the type is in kinds[], the lexeme follows from the type)
+    //  Object -> index into the literal pool
+    private static void defineArena(String dir, String baseName, List<String> types) throws IOException {
+        String arenaName = baseName + "Arena";
+        PrintWriter writer = new PrintWriter(dir + '/' + arenaName + ".java", "UTF-8");
+
+        int slots = 0;
+        for (String type : types) {
+            slots = Math.max(slots, type.split(":")[1].trim().split(", ").length);
+        }
+
+        writer.println("package com.jlox;");
+        writer.println();
+        writer.println("import java.util.Arrays;");
+        writer.println("import java.util.HashMap;");
+        writer.println("import java.util.Map;");
+        writer.println();
+        writer.println("//flat encoding of " + baseName + " trees, generated by GenerateAST from the same types as " + baseName + ".");
+        writer.println("//a node is an int index. kinds[] has the node kind in the low byte and the operator's token type");
+        writer.println("//ordinal above it, the fields go in the slot columns: child node indexes, the operator's line,");
+        writer.println("//or an index into the literal pool. children always come before their parent");
+        writer.println("final class " + arenaName + " {");
+        writer.println();
+
+        for (int i = 0; i < types.size(); i++) {
+            String className = types.get(i).split(":")[0].trim();
+            writer.println("  static final int " + className.toUpperCase() + " = " + i + ";");
+        }
+
+        writer.println();
+        writer.println("  interface Visitor<R> {");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            writer.println("    R visit" + className + "(int node);");
+        }
+        writer.println("  }");
+
+        writer.println();
+        writer.println("  private static final TokenType[] TOKEN_TYPES = TokenType.values();");
+        writer.println();
+        writer.println("  private int[] kinds = new int[16];");
+        for (int i = 0; i < slots; i++) {
+            writer.println("  private int[] slot" + i + " = new int[16];");
+        }
+        writer.println("  private int size = 0;");
+        writer.println();
+        writer.println("  //equal literals share one slot");
+        writer.println("  private Object[] literals = new Object[16];");
+        writer.println("  private int literalCount = 0;");
+        writer.println("  private Map<Object, Integer> literalIndex = new HashMap<>(); //dropped by trim, rebuilt if needed");
+        writer.println();
+        writer.println("  int root = -1;");
+
+        writer.println();
+        writer.println("  int size() {");
+        writer.println("    return size;");
+        writer.println("  }");
+        writer.println();
+        writer.println("  int kind(int node) {");
+        writer.println("    return kinds[node] & 0xff;");
+        writer.println("  }");
+
+        writer.println();
+        writer.println("  <R> R accept(int node, Visitor<R> visitor) {");
+        writer.println("    switch (kind(node)) {");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            writer.println("      case " + className.toUpperCase() + ": return visitor.visit" + className + "(node);");
+        }
+        writer.println("      default: throw new IllegalStateException(\"Bad node \" + node);");
+        writer.println("    }");
+        writer.println("  }");
+
+        for (String type : types) {
+            defineArenaType(writer, type);
+        }
+
+        //storage
+        writer.println();
+        writer.println("  private int node(int kind) {");
+        writer.println("    if (size == kinds.length) {");
+        writer.println("      int capacity = Math.max(16, size * 2);");
+        writer.println("      kinds = Arrays.copyOf(kinds, capacity);");
+        for (int i = 0; i < slots; i++) {
+            writer.println("      slot" + i + " = Arrays.copyOf(slot" + i + ", capacity);");
+        }
+        writer.println("    }");
+        writer.println();
+        writer.println("    kinds[size] = kind;");
+        writer.println("    return size++;");
+        writer.println("  }");
+
+        writer.println();
+        writer.println("  private int pool(Object value) {");
+        writer.println("    if (literalIndex == null) {");
+        writer.println("      literalIndex = new HashMap<>();");
+        writer.println("      for (int i = 0; i < literalCount; i++) literalIndex.put(literals[i], i);");
+        writer.println("    }");
+        writer.println();
+        writer.println("    Integer index = literalIndex.get(value);");
+        writer.println("    if (index != null) return index;");
+        writer.println();
+        writer.println("    if (literalCount == literals.length) literals = Arrays.copyOf(literals, Math.max(16, literalCount * 2));");
+        writer.println("    literals[literalCount] = value;");
+        writer.println("    literalIndex.put(value, literalCount);");
+        writer.println("    return literalCount++;");
+        writer.println("  }");
+
+        writer.println();
+        writer.println("  //drops the spare capacity and the literal lookup table, from() calls this once its done");
+        writer.println("  void trim() {");
+        writer.println("    kinds = Arrays.copyOf(kinds, size);");
+        for (int i = 0; i < slots; i++) {
+            writer.println("    slot" + i + " = Arrays.copyOf(slot" + i + ", size);");
+        }
+        writer.println("    literals = Arrays.copyOf(literals, literalCount);");
+        writer.println("    literalIndex = null;");
+        writer.println("  }");
+        writer.println();
+        writer.println("  //operator tokens come back with their type, lexeme and line, literal tokens never end up in a tree");
+        writer.println("  private static Token token(int kind, int line) {");
+        writer.println("    TokenType type = TOKEN_TYPES[kind >>> 8];");
+        writer.println("    return new Token(type, Scanner.fixedLexeme(type), null, line);");
+        writer.println("  }");
+
+        //converters
+        writer.println();
+        writer.println("  static " + arenaName + " from(" + baseName + " " + baseName.toLowerCase() + ") {");
+        writer.println("    " + arenaName + " arena = new " + arenaName + "();");
+        writer.println("    arena.root = " + baseName.toLowerCase() + ".accept(new Encoder(arena));");
+        writer.println("    arena.trim();");
+        writer.println("    return arena;");
+        writer.println("  }");
+
+        writer.println();
+        writer.println("  " + baseName + " to" + baseName + "() {");
+        writer.println("    return to" + baseName + "(root);");
+        writer.println("  }");
+
+        writer.println();
+        writer.println("  " + baseName + " to" + baseName + "(int node) {");
+        writer.println("    switch (kind(node)) {");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            String[] fields = type.split(":")[1].trim().split(", ");
+            writer.print("      case " + className.toUpperCase() + ": return new " + baseName + "." + className + "(");
+            for (int i = 0; i < fields.length; i++) {
+                String fieldType = fields[i].split(" ")[0];
+                if (i > 0) writer.print(", ");
+                if (fieldType.equals(baseName)) {
+                    writer.print("to" + baseName + "(slot" + i + "[node])");
+                } else if (fieldType.equals("Token")) {
+                    writer.print("token(kinds[node], slot" + i + "[node])");
+                } else {
+                    writer.print("literals[slot" + i + "[node]]");
+                }
+            }
+            writer.println(");");
+        }
+        writer.println("      default: throw new IllegalStateException(\"Bad node \" + node);");
+        writer.println("    }");
+        writer.println("  }");
+
+        writer.println();
+        writer.println("  private static class Encoder implements " + baseName + ".Visitor<Integer> {");
+        writer.println("    private final " + arenaName + " arena;");
+        writer.println();
+        writer.println("    Encoder(" + arenaName + " arena) {");
+        writer.println("      this.arena = arena;");
+        writer.println("    }");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            String[] fields = type.split(":")[1].trim().split(", ");
+            String param = baseName.toLowerCase();
+            writer.println();
+            writer.println("    @Override");
+            writer.println("    public Integer visit" + className + baseName + "(" + baseName + "." + className + " " + param + ") {");
+            writer.print("      return arena." + className.toLowerCase() + "(");
+            for (int i = 0; i < fields.length; i++) {
+                String fieldType = fields[i].split(" ")[0];
+                String name = fields[i].split(" ")[1];
+                if (i > 0) writer.print(", ");
+                if (fieldType.equals(baseName)) {
+                    writer.print(param + "." + name + ".accept(this)");
+                } else {
+                    writer.print(param + "." + name);
+                }
+            }
+            writer.println(");");
+            writer.println("    }");
+        }
+        writer.println("  }");
+
+        writer.println("}");
+        writer.close();
+    }
+
+    //adder and field accessors for one node type
+    private static void defineArenaType(PrintWriter writer, String type) {
+        String className = type.split(":")[0].trim();
+        String kind = className.toUpperCase();
+        String prefix = Character.toLowerCase(className.charAt(0)) + className.substring(1);
+        String[] fields = type.split(":")[1].trim().split(", ");
+
+        String tokenField = null;
+        StringBuilder params = new StringBuilder();
+        for (int i = 0; i < fields.length; i++) {
+            String fieldType = fields[i].split(" ")[0];
+            String name = fields[i].split(" ")[1];
+
+            if (fieldType.equals("Token")) {
+                //the ordinal only has one spot in kinds[]
+                if (tokenField != null) throw new IllegalArgumentException(className + " has more than one Token");
+                tokenField = name;
+            } else if (!fieldType.equals("Expr") && !fieldType.equals("Object")) {
+                throw new IllegalArgumentException("Arena can't hold a " + fieldType + " field");
+            }
+
+            if (i > 0) params.append(", ");
+            params.append(fieldType.equals("Expr") ? "int" : fieldType).append(' ').append(name);
+        }
+
+        writer.println();
+        writer.println("  //" + className.toLowerCase());
+        writer.println();
+        writer.println("  int " + prefix + "(" + params + ") {");
+        if (tokenField != null) {
+            writer.println("    int node = node(" + kind + " | " + tokenField + ".type.ordinal() << 8);");
+        } else {
+            writer.println("    int node = node(" + kind + ");");
+        }
+        for (int i = 0; i < fields.length; i++) {
+            String fieldType = fields[i].split(" ")[0];
+            String name = fields[i].split(" ")[1];
+            if (fieldType.equals("Token")) {
+                writer.println("    slot" + i + "[node] = " + name + ".line;");
+            } else if (fieldType.equals("Object")) {
+                writer.println("    slot" + i + "[node] = pool(" + name + ");");
+            } else {
+                writer.println("    slot" + i + "[node] = " + name + ";");
+            }
+        }
+        writer.println("    return node;");
+        writer.println("  }");
+
+        for (int i = 0; i < fields.length; i++) {
+            String fieldType = fields[i].split(" ")[0];
+            String name = fields[i].split(" ")[1];
+            String accessor = prefix + Character.toUpperCase(name.charAt(0)) + name.substring(1);
+
+            writer.println();
+            if (fieldType.equals("Token")) {
+                writer.println("  TokenType " + accessor + "(int node) {");
+                writer.println("    return TOKEN_TYPES[kinds[node] >>> 8];");
+                writer.println("  }");
+                writer.println();
+                writer.println("  int " + accessor + "Line(int node) {");
+                writer.println("    return slot" + i + "[node];");
+                writer.println("  }");
+            } else if (fieldType.equals("Object")) {
+                writer.println("  Object " + accessor + "(int node) {");
+                writer.println("    return literals[slot" + i + "[node]];");
+                writer.println("  }");
+            } else {
+                writer.println("  int " + accessor + "(int node) {");
+                writer.println("    return slot" + i + "[node];");
+                writer.println("  }");
+            }
+        }
+    }
+
+
+    //the same types as a sealed interface of records, with a dense kind() ordinal for tables and switches.
+    //java 17 has no pattern matching switch, so match() stands in for one: it takes a function per
+    //type, which makes leaving a case out a compile error. underneath its an instanceof chain, which is
+    //what a type switch comes down to, kind() is an interface call and as megamorphic as accept
+    private static void defineSealed(String dir, String baseName, List<String> types) throws IOException {
+        String sealedName = "Sealed" + baseName;
+        PrintWriter writer = new PrintWriter(dir + '/' + sealedName + ".java", "UTF-8");
+
+        String permits = "";
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            permits += (permits.isEmpty() ? "" : ", ") + sealedName + "." + className;
+        }
+
+        writer.println("package com.jlox;");
+        writer.println();
+        writer.println("import java.util.function.Function;");
+        writer.println();
+        writer.println("//the " + baseName + " types as a sealed interface of records, generated by GenerateAST --sealed.");
+        writer.println("//kind() is a dense ordinal for tables and switches, match() is the exhaustive type switch and");
+        writer.println("//from/to" + baseName + " convert, accept still works for visitors");
+        writer.println("sealed interface " + sealedName + " permits " + permits + " {");
+        writer.println();
+
+        for (int i = 0; i < types.size(); i++) {
+            String className = types.get(i).split(":")[0].trim();
+            writer.println("  int " + className.toUpperCase() + " = " + i + ";");
+        }
+        writer.println("  int KINDS = " + types.size() + ";");
+
+        writer.println();
+        writer.println("  int kind();");
+        writer.println();
+        writer.println("  <R> R accept(Visitor<R> visitor);");
+
+        writer.println();
+        writer.println("  interface Visitor<R> {");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            writer.println("    R visit" + className + baseName + "(" + className + " expr);");
+        }
+        writer.println("  }");
+
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            String fields = type.split(":")[1].trim().replace(baseName + " ", sealedName + " ");
+
+            writer.println();
+            writer.println("  record " + className + "(" + fields + ") implements " + sealedName + " {");
+            writer.println("    @Override");
+            writer.println("    public int kind() {");
+            writer.println("      return " + className.toUpperCase() + ";");
+            writer.println("    }");
+            writer.println();
+            writer.println("    @Override");
+            writer.println("    public <R> R accept(Visitor<R> visitor) {");
+            writer.println("      return visitor.visit" + className + baseName + "(this);");
+            writer.println("    }");
+            writer.println("  }");
+        }
+
+        //match
+        writer.println();
+        writer.print("  static <R> R match(" + sealedName + " expr");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            writer.print(", Function<" + className + ", R> " + className.toLowerCase());
+        }
+        writer.println(") {");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            writer.println("    if (expr instanceof " + className + ") return " + className.toLowerCase() + ".apply((" + className + ") expr);");
+        }
+        writer.println("    throw new IllegalStateException(\"Bad node \" + expr);");
+        writer.println("  }");
+
+        //from, an instanceof chain since Expr has no kind of its own
+        writer.println();
+        writer.println("  static " + sealedName + " from(" + baseName + " expr) {");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            writer.println("    if (expr instanceof " + baseName + "." + className + ") {");
+            writer.println("      " + baseName + "." + className + " node = (" + baseName + "." + className + ") expr;");
+            writer.println("      return new " + className + "(" + convert(type, baseName, "from", false) + ");");
+            writer.println("    }");
+        }
+        writer.println("    throw new IllegalStateException(\"Bad node \" + expr);");
+        writer.println("  }");
+
+        //and back
+        writer.println();
+        writer.println("  static " + baseName + " to" + baseName + "(" + sealedName + " expr) {");
+        writer.println("    switch (expr.kind()) {");
+        for (String type : types) {
+            String className = type.split(":")[0].trim();
+            writer.println("      case " + className.toUpperCase() + ": {");
+            writer.println("        " + className + " node = (" + className + ") expr;");
+            writer.println("        return new " + baseName + "." + className + "(" + convert(type, baseName, "to" + baseName, true) + ");");
+            writer.println("      }");
+        }
+        writer.println("      default: throw new IllegalStateException(\"Bad kind \" + expr.kind());");
         writer.println("    }");
+        writer.println("  }");
 
+        writer.println('}');
+        writer.close();
+    }
+
+    //constructor arguments copying each field of type across from node, child nodes go through
+    //the convert method. accessors is for reading off a record, x() instead of x
+    private static String convert(String type, String baseName, String convert, boolean accessors) {
+        String arguments = "";
+        for (String field : type.split(":")[1].trim().split(", ")) {
+            String fieldType = field.split(" ")[0];
+            String read = "node." + field.split(" ")[1] + (accessors ? "()" : "");
+            String argument = fieldType.equals(baseName) ? convert + "(" + read + ")" : read;
+            arguments += (arguments.isEmpty() ? "" : ", ") + argument;
+        }
+        return arguments;
     }
 
 
@@ -0,0 +1,121 @@
+package com.jlox;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+//NumberDecoder has to give exactly the bits Double.parseDouble gives, for every lexeme the scanner can
+//hand it. each property runs a few thousand inputs from a fixed seed, off a String and off a mapped file
+class NumberDecoderTest {
+
+    private static final int COUNT = 5000;
+
+    @TempDir
+    Path directory;
+
+    //any mix of lengths, so all three paths (fast, eisel-lemire, fallback) get hit
+    @Test
+    void randomDigits() throws IOException {
+        Random random = new Random(1);
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            String number = digits(random, 1 + random.nextInt(24));
+            if (random.nextBoolean()) number += "." + digits(random, 1 + random.nextInt(24));
+            numbers.add(number);
+        }
+        check(numbers);
+    }
+
+    //the exact midpoint between two neighbouring doubles, where rounding to even decides, and the
+    //numbers a hair either side of it
+    @Test
+    void halfway() throws IOException {
+        Random random = new Random(2);
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < COUNT; i++) {
+            double value = Math.abs(random.nextDouble() * Math.pow(10, random.nextInt(40) - 20));
+            addHalfway(numbers, value);
+        }
+        check(numbers);
+    }
+
+    //below Double.MIN_NORMAL the precision drops a bit at a time
+    @Test
+    void subnormal() throws IOException {
+        Random random = new Random(3);
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < COUNT / 10; i++) {
+            double value = Double.MIN_VALUE * (1 + random.nextInt(1 << 20)) * (random.nextBoolean() ? 1 : 1L << 31);
+            numbers.add(new BigDecimal(value).toPlainString());
+            addHalfway(numbers, value);
+        }
+        numbers.add(new BigDecimal(Double.MIN_VALUE).toPlainString());
+        numbers.add(new BigDecimal(Double.MIN_VALUE).divide(BigDecimal.valueOf(2)).toPlainString());
+        numbers.add(new BigDecimal(Double.MIN_NORMAL).toPlainString());
+        check(numbers);
+    }
+
+    //2^53 is where the fast path stops being exact, every integer past it no longer has its own double
+    @Test
+    void nearTwoToThe53() throws IOException {
+        long edge = 1L << 53;
+        List<String> numbers = new ArrayList<>();
+        for (long w = edge - 1000; w <= edge + 1000; w++) {
+            numbers.add(Long.toString(w));
+            numbers.add(w + ".5");
+            numbers.add(w + ".0");
+            numbers.add(w + ".49999999999999999999");
+            numbers.add((w / 10) + "." + (w % 10));
+        }
+        check(numbers);
+    }
+
+    private static void addHalfway(List<String> numbers, double value) {
+        BigDecimal low = new BigDecimal(value);
+        BigDecimal high = new BigDecimal(Math.nextUp(value));
+        BigDecimal middle = low.add(high).divide(BigDecimal.valueOf(2));
+        BigDecimal nudge = middle.ulp().movePointLeft(1);
+
+        numbers.add(middle.toPlainString());
+        numbers.add(middle.add(nudge).toPlainString());
+        numbers.add(middle.subtract(nudge).toPlainString());
+    }
+
+    private static String digits(Random random, int length) {
+        StringBuilder digits = new StringBuilder(length);
+        for (int i = 0; i < length; i++) digits.append((char) ('0' + random.nextInt(10)));
+        return digits.toString();
+    }
+
+    //every number once in a String with text around it, and once more in a mapped file
+    private void check(List<String> numbers) throws IOException {
+        for (String number : numbers) {
+            String script = "(" + number + " ";
+            assertSame(number, NumberDecoder.decode(script, 1, 1 + number.length()));
+        }
+
+        Path file = directory.resolve("numbers.lox");
+        Files.writeString(file, String.join(" + ", numbers), StandardCharsets.UTF_8);
+        MappedSource source = MappedSource.map(file, StandardCharsets.UTF_8);
+
+        int start = 0;
+        for (String number : numbers) {
+            assertSame(number, NumberDecoder.decode(source, start, start + number.length()));
+            start += number.length() + 3;
+        }
+    }
+
+    private static void assertSame(String number, double decoded) {
+        assertEquals(Double.doubleToRawLongBits(Double.parseDouble(number)), Double.doubleToRawLongBits(decoded), number);
+    }
+}